@@ -0,0 +1,98 @@
+package com.anchore.jenkins.plugins.anchore;
+
+/**
+ * Number of stop, warn and go findings of one or more policy evaluations, or of images by final action. Allowlisted findings are
+ * counted separately and are not included in {@link #getStop()}, {@link #getWarn()} and {@link #getGo()}.
+ */
+public final class ActionCounts {
+
+  private int stop, warn, go;
+  private int stopAllowlisted, warnAllowlisted, goAllowlisted;
+
+  /**
+   * Counts a finding
+   *
+   * @param finding policy finding, findings with actions other than stop, warn and go are ignored
+   */
+  public void add(PolicyFinding finding) {
+    add(finding.getAction(), finding.isAllowlisted());
+  }
+
+  /**
+   * Counts an action, for instance the final action of an image
+   *
+   * @param action stop, warn or go, other actions are ignored
+   * @param allowlisted whether to count the action as allowlisted
+   */
+  public void add(String action, boolean allowlisted) {
+    switch (action) {
+      case "stop":
+        if (allowlisted) {
+          stopAllowlisted++;
+        } else {
+          stop++;
+        }
+        break;
+      case "warn":
+        if (allowlisted) {
+          warnAllowlisted++;
+        } else {
+          warn++;
+        }
+        break;
+      case "go":
+        if (allowlisted) {
+          goAllowlisted++;
+        } else {
+          go++;
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Adds all the counts of another instance to this one
+   *
+   * @param other counts to add
+   */
+  public void add(ActionCounts other) {
+    stop += other.stop;
+    warn += other.warn;
+    go += other.go;
+    stopAllowlisted += other.stopAllowlisted;
+    warnAllowlisted += other.warnAllowlisted;
+    goAllowlisted += other.goAllowlisted;
+  }
+
+  public int getStop() {
+    return stop;
+  }
+
+  public int getWarn() {
+    return warn;
+  }
+
+  public int getGo() {
+    return go;
+  }
+
+  public int getStopAllowlisted() {
+    return stopAllowlisted;
+  }
+
+  public int getWarnAllowlisted() {
+    return warnAllowlisted;
+  }
+
+  public int getGoAllowlisted() {
+    return goAllowlisted;
+  }
+
+  @Override
+  public String toString() {
+    return "stop: " + stop + " (+" + stopAllowlisted + " allowlisted), warn: " + warn + " (+" + warnAllowlisted + " allowlisted), go: "
+        + go + " (+" + goAllowlisted + " allowlisted)";
+  }
+}
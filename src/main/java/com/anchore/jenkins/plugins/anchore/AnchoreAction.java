@@ -1,34 +1,83 @@
 package com.anchore.jenkins.plugins.anchore;
 
+import com.anchore.jenkins.plugins.anchore.Util.GATE_SUMMARY_COLUMN;
 import hudson.model.Action;
 import hudson.model.Job;
 import hudson.model.Run;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.http.HttpServletResponse;
 import jenkins.model.Jenkins;
+import jenkins.model.RunAction2;
 import jenkins.model.lazy.LazyBuildMixIn;
 import jenkins.tasks.SimpleBuildStep;
+import jenkins.util.VirtualFile;
+import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
+import org.apache.commons.io.IOUtils;
+import org.kohsuke.stapler.StaplerProxy;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
 
 /**
  * Anchore plugin results for a given build are stored and subsequently retrieved from an instance of this class. Rendering/display of
  * the results is defined in the appropriate index and summary jelly files. This Jenkins Action is associated with a build (and not the
  * project which is one level up)
+ *
+ * <p>Only counters and URLs are persisted in build.xml. The policy evaluation summary and the query report URLs are stored in a
+ * sidecar file in the build directory, which is read when the report page needs it and held through a soft reference. Jenkins loads
+ * build.xml whenever a build record is touched (trend graphs, job pages, walks over previous results), none of which need the
+ * summary. Actions of builds recorded before the sidecar are migrated when their report is first requested, loading a build never
+ * writes to its directory.
  */
-public class AnchoreAction implements SimpleBuildStep.LastBuildAction {
+public class AnchoreAction implements SimpleBuildStep.LastBuildAction, RunAction2, StaplerProxy {
+
+  private static final Logger LOG = Logger.getLogger(AnchoreAction.class.getName());
+
+  private static final String GZIP_FILE_EXTENSION = ".gz";
+  private static final String SIDECAR_FILE_NAME = "anchore-report.json";
 
   private Run<?, ?> build;
   private String gateStatus;
   private String gateOutputUrl;
+  // Kept in build.xml only if the sidecar could not be written, and in builds recorded before the sidecar
   private Map<String, String> queryOutputUrls;
   private String gateSummary;
+  private String summaryFileName;
+  private transient SoftReference<JSONObject> sidecar;
+  // Set once the sidecar could not be written, so that a build on read-only storage is not retried on every request
+  private transient boolean sidecarFailed;
+  // Parsed view of gateSummary while it is kept in build.xml, and the summary serialized for the report page
+  private transient volatile JSONObject parsedGateSummary;
+  private transient volatile SoftReference<String> gateSummaryJson;
+  // Rendered when the action is created, so that the build page shows it without reading the summary
+  private volatile String summaryLine;
   private String cveListingUrl;
   private int stopActionCount;
   private int warnActionCount;
   private int goActionCount;
+  // Trend counters, null in builds recorded before they were kept. See getImageActionCounts() and getVulnerabilityCounts()
+  private int[] imageActionCounts;
+  private int[] vulnerabilityCounts;
+  private String jenkinsOutputDirName;
+  private String gateTableFileName;
+  private String cveTableFileName;
+  private transient Map<String, SoftReference<ReportTable>> tables;
 
   // For backwards compatibility
   @Deprecated
@@ -45,7 +94,8 @@ public class AnchoreAction implements SimpleBuildStep.LastBuildAction {
     this.stopActionCount = stopActionCount;
     this.warnActionCount = warnActionCount;
     this.goActionCount = goActionCount;
-    this.gateOutputUrl = "../artifact/" + jenkinsOutputDirName + "/" + gateReport;
+    this.gateOutputUrl = reportUrl(jenkinsOutputDirName, gateReport);
+    this.jenkinsOutputDirName = jenkinsOutputDirName;
 
     this.queryOutputUrls = new HashMap<String, String>();
     for (Map.Entry<String, String> entry : queryReports.entrySet()) {
@@ -66,11 +116,37 @@ public class AnchoreAction implements SimpleBuildStep.LastBuildAction {
     });
     */
     this.gateSummary = gateSummary;
+    this.summaryLine = renderSummaryLine();
     if (null != cveListingFileName && cveListingFileName.trim().length() > 0) {
-      this.cveListingUrl = "../artifact/" + jenkinsOutputDirName + "/" + cveListingFileName;
+      this.cveListingUrl = reportUrl(jenkinsOutputDirName, cveListingFileName);
     }
   }
 
+  /**
+   * Attaches the paged report tables of the build, served by {@link #doGatesTable(StaplerRequest, StaplerResponse)} and {@link
+   * #doSecurityTable(StaplerRequest, StaplerResponse)}. Builds without tables load the reports as a whole
+   *
+   * @param gateTableFileName index file of the policy evaluation table in the report directory, or null if there is none
+   * @param cveTableFileName index file of the vulnerability table in the report directory, or null if there is none
+   */
+  public void setReportTables(String gateTableFileName, String cveTableFileName) {
+    this.gateTableFileName = gateTableFileName;
+    this.cveTableFileName = cveTableFileName;
+  }
+
+  /**
+   * Attaches the counters of the build kept for the trend graphs, see {@link #getImageActionCounts()} and {@link
+   * #getVulnerabilityCounts()}
+   *
+   * @param imageActionCounts number of images by final action, or null if not known
+   * @param vulnerabilityCounts number of vulnerabilities by severity, or null if the vulnerability listing was not fetched
+   */
+  public void setTrendCounts(ActionCounts imageActionCounts, VulnerabilityCounts vulnerabilityCounts) {
+    this.imageActionCounts = null != imageActionCounts
+        ? new int[] {imageActionCounts.getStop(), imageActionCounts.getWarn(), imageActionCounts.getGo()} : null;
+    this.vulnerabilityCounts = null != vulnerabilityCounts ? vulnerabilityCounts.toArray() : null;
+  }
+
   @Override
   public String getIconFileName() {
     return Jenkins.RESOURCE_PATH + "/plugin/anchore-container-scanner/images/anchore.png";
@@ -99,38 +175,24 @@ public class AnchoreAction implements SimpleBuildStep.LastBuildAction {
   }
 
   public Map<String, String> getQueryOutputUrls() {
-    // queryOutputUrls was a guava TransformedEntriesMap object in plugin version < 1.0.13 and is loaded as such. Plugin versions >=
-    // 1.0.13 changed the type definition and lose the transformer function required for reading the  map contents. This results in
-    // a failure to load the member. Transfer the contents from the underlying guava map to a native java map using the keys and
-    // some hacky guess work
-
-    /* Find bugs does not like the instanceof check, falling back to try-catch approach
-    if (!(this.queryOutputUrls instanceof HashMap)) {
-      String base_path = this.gateOutputUrl.substring(0, this.gateOutputUrl.lastIndexOf('/'));
-      int query_num = 0;
-      Map<String, String> fixedQueryOutputUrls = new HashMap<>();
-      for (String key : this.queryOutputUrls.keySet()) {
-        fixedQueryOutputUrls.put(key, base_path + "/anchore_query_" + String.valueOf(++query_num) + ".json");
-      }
-      return fixedQueryOutputUrls;
-    }*/
-
-    Map<String, String> fixedQueryOutputUrls = new HashMap<>();
-    try {
-      // Fetch values in the map to verify the underlying map is functional
-      if (null != this.queryOutputUrls) {
-        for (Map.Entry<String, String> entry : this.queryOutputUrls.entrySet()) {
-          fixedQueryOutputUrls.put(entry.getKey(), encodeURL(entry.getValue()));
+    Map<String, String> urls = queryOutputUrls;
+    if (null == urls) {
+      JSONObject data = readSidecar();
+      JSONObject stored = null != data ? data.optJSONObject("queryOutputUrls") : null;
+      urls = new HashMap<>();
+      if (null != stored) {
+        for (Iterator<String> keys = stored.keys(); keys.hasNext(); ) {
+          String key = keys.next();
+          urls.put(key, stored.getString(key));
         }
       }
-    } catch (Exception e) {
-      String base_path = encodeURL(this.gateOutputUrl.substring(0, this.gateOutputUrl.lastIndexOf('/')));
-      int query_num = 0;
-      for (String key : this.queryOutputUrls.keySet()) {
-        fixedQueryOutputUrls.put(key, base_path + "/anchore_query_" + String.valueOf(++query_num) + ".json");
-      }
     }
-    return fixedQueryOutputUrls;
+
+    Map<String, String> encodedUrls = new HashMap<>();
+    for (Map.Entry<String, String> entry : urls.entrySet()) {
+      encodedUrls.put(entry.getKey(), encodeURL(entry.getValue()));
+    }
+    return encodedUrls;
   }
 
   public JSONObject getGateSummary() {
@@ -138,17 +200,75 @@ public class AnchoreAction implements SimpleBuildStep.LastBuildAction {
     // Summary data from the previous versions is lost during deserialization due to the type change and plugin versions > 1.0.12
     // won't be able to render the summary table only for builds that were executed using older versions of the plugin. This check
     // is necessary to ensure plugin doesn't exception out in the process
-    if (null != this.gateSummary && this.gateSummary.trim().length() > 0) {
-      return JSONObject.fromObject(this.gateSummary);
-    } else {
-      return null;
+    String summary = this.gateSummary;
+    if (null != summary && summary.trim().length() > 0) {
+      JSONObject parsed = parsedGateSummary;
+      if (null == parsed) {
+        synchronized (this) {
+          parsed = parsedGateSummary;
+          if (null == parsed) {
+            parsed = JSONObject.fromObject(summary);
+            parsedGateSummary = parsed;
+          }
+        }
+      }
+      return parsed;
     }
+    JSONObject data = readSidecar();
+    JSONObject stored = null != data ? data.optJSONObject("gateSummary") : null;
+    return null != stored && !stored.isNullObject() ? stored : null;
+  }
+
+  /**
+   * @return the policy evaluation summary serialized as JSON for the report page script, or null if there is no summary
+   */
+  public String getGateSummaryJson() {
+    SoftReference<String> cached = gateSummaryJson;
+    String json = null != cached ? cached.get() : null;
+    if (null == json) {
+      JSONObject summary = getGateSummary();
+      if (null == summary) {
+        return null;
+      }
+      json = summary.toString();
+      gateSummaryJson = new SoftReference<>(json);
+    }
+    return json;
+  }
+
+  /**
+   * @return one line summary of the final actions of the images and of the policy findings, for the build page. Null if there is no
+   * summary. Builds recorded before the line was rendered up front render it once from the summary
+   */
+  public String getSummaryLine() {
+    String line = summaryLine;
+    if (null == line) {
+      line = renderSummaryLine();
+      summaryLine = line;
+    }
+    return line.isEmpty() ? null : line;
   }
 
   public String getCveListingUrl() {
     return encodeURL(cveListingUrl);
   }
 
+  /**
+   * @return URL of the paged policy evaluation report table relative to the Anchore report page, or null if the build has no table
+   * and the report is loaded as a whole
+   */
+  public String getGateTableUrl() {
+    return null != gateTableFileName ? "gatesTable" : null;
+  }
+
+  /**
+   * @return URL of the paged vulnerability table relative to the Anchore report page, or null if the build has no table and the
+   * listing is loaded as a whole
+   */
+  public String getCveTableUrl() {
+    return null != cveTableFileName ? "securityTable" : null;
+  }
+
   public String getGateReportUrl() {
     return this.gateReportUrl;
   }
@@ -169,12 +289,150 @@ public class AnchoreAction implements SimpleBuildStep.LastBuildAction {
     return this.warnActionCount;
   }
 
+  /**
+   * @return number of images by final action: stop, warn and go. Null if not recorded
+   */
+  public int[] getImageActionCounts() {
+    return null != imageActionCounts ? imageActionCounts.clone() : null;
+  }
+
+  /**
+   * @return number of vulnerabilities by severity from critical to unknown, followed by the number of them with a fix available. Null
+   * if not recorded, for instance when the vulnerability listing was not fetched
+   */
+  public int[] getVulnerabilityCounts() {
+    return null != vulnerabilityCounts ? vulnerabilityCounts.clone() : null;
+  }
+
   @Override
   public Collection<? extends Action> getProjectActions() {
     Job<?,?> job = this.build.getParent();
     return Collections.singleton(new AnchoreProjectAction(job));
   }
 
+  @Override
+  public void onAttached(Run<?, ?> r) {
+    this.build = r;
+    moveToSidecar();
+  }
+
+  @Override
+  public void onLoad(Run<?, ?> r) {
+    this.build = r;
+  }
+
+  /**
+   * Moves the report data of a build recorded before the sidecar to the sidecar when its report is first requested, and saves the
+   * build so that build.xml no longer holds it. Builds are loaded far more often than their report is viewed, for trend graphs and
+   * walks over previous results, and may be on read-only storage
+   */
+  @Override
+  public Object getTarget() {
+    if (moveToSidecar()) {
+      try {
+        build.save();
+      } catch (IOException | RuntimeException e) {
+        LOG.log(Level.WARNING, "Failed to save " + build + " after moving its Anchore report summary to " + SIDECAR_FILE_NAME, e);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Normalizes the report data of actions recorded before the sidecar, which {@link #getTarget()} then moves to the sidecar. The
+   * build directory is not known yet at this point
+   */
+  protected Object readResolve() {
+    if (null != queryOutputUrls) {
+      queryOutputUrls = fixQueryOutputUrls();
+    }
+    if (null != gateSummary && gateSummary.trim().isEmpty()) {
+      gateSummary = null;
+    }
+    return this;
+  }
+
+  /**
+   * Writes the summary and the query report URLs to the sidecar and drops them from the action, they stay in build.xml if the sidecar
+   * cannot be written. An existing sidecar of a migrated build whose build.xml was not saved since is reused as it is
+   *
+   * @return true if the data was moved and the build is to be saved
+   */
+  private synchronized boolean moveToSidecar() {
+    if ((null == gateSummary && null == queryOutputUrls) || sidecarFailed || null == build || null == build.getRootDir()) {
+      return false;
+    }
+
+    File file = new File(build.getRootDir(), SIDECAR_FILE_NAME);
+    try {
+      if (null == summaryFileName && file.isFile()) {
+        summaryFileName = SIDECAR_FILE_NAME;
+      } else {
+        JSONObject data = new JSONObject();
+        if (null != gateSummary) {
+          data.put("gateSummary", JSONObject.fromObject(gateSummary));
+        }
+        data.put("queryOutputUrls", null != queryOutputUrls ? queryOutputUrls : Collections.emptyMap());
+
+        File tmp = new File(build.getRootDir(), SIDECAR_FILE_NAME + ".tmp");
+        Files.write(tmp.toPath(), data.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        summaryFileName = SIDECAR_FILE_NAME;
+        sidecar = new SoftReference<>(data);
+      }
+      gateSummary = null;
+      parsedGateSummary = null;
+      queryOutputUrls = null;
+      return true;
+    } catch (IOException | RuntimeException e) {
+      sidecarFailed = true;
+      LOG.log(Level.WARNING, "Failed to write Anchore report summary to " + file + ", keeping it in the build record", e);
+      return false;
+    }
+  }
+
+  /**
+   * @return contents of the sidecar, read once and kept as long as memory allows. Null if there is no sidecar or it cannot be read
+   */
+  private synchronized JSONObject readSidecar() {
+    JSONObject data = null != sidecar ? sidecar.get() : null;
+    if (null == data && null != summaryFileName && null != build) {
+      File file = new File(build.getRootDir(), summaryFileName);
+      try {
+        data = JSONObject.fromObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        sidecar = new SoftReference<>(data);
+      } catch (IOException | RuntimeException e) {
+        LOG.log(Level.WARNING, "Failed to read Anchore report summary from " + file, e);
+      }
+    }
+    return data;
+  }
+
+  /**
+   * @return query report URLs of an action recorded by an older plugin version as a plain map
+   */
+  private Map<String, String> fixQueryOutputUrls() {
+    // queryOutputUrls was a guava TransformedEntriesMap object in plugin version < 1.0.13 and is loaded as such. Plugin versions >=
+    // 1.0.13 changed the type definition and lose the transformer function required for reading the  map contents. This results in
+    // a failure to load the member. Transfer the contents from the underlying guava map to a native java map using the keys and
+    // some hacky guess work
+    Map<String, String> fixedQueryOutputUrls = new HashMap<>();
+    try {
+      // Fetch values in the map to verify the underlying map is functional
+      for (Map.Entry<String, String> entry : this.queryOutputUrls.entrySet()) {
+        fixedQueryOutputUrls.put(entry.getKey(), entry.getValue());
+      }
+    } catch (Exception e) {
+      fixedQueryOutputUrls.clear();
+      String base_path = this.gateOutputUrl.substring(0, this.gateOutputUrl.lastIndexOf('/'));
+      int query_num = 0;
+      for (String key : this.queryOutputUrls.keySet()) {
+        fixedQueryOutputUrls.put(key, base_path + "/anchore_query_" + String.valueOf(++query_num) + ".json");
+      }
+    }
+    return fixedQueryOutputUrls;
+  }
+
   /**
    * Gets the Anchore result of the previous build, if it's recorded, or null.
    * @return the previous AnchoreAction
@@ -199,6 +457,162 @@ public class AnchoreAction implements SimpleBuildStep.LastBuildAction {
     }
   }
 
+  /**
+   * Serves a gzip compressed report from the artifacts of the build as it is stored, with Content-Encoding: gzip, so that browsers
+   * inflate it rather than the controller. Reports are inflated on the fly only for clients that do not accept gzip
+   */
+  public void doReport(StaplerRequest req, StaplerResponse rsp) throws IOException {
+    build.checkPermission(Run.ARTIFACTS);
+
+    String path = req.getRestOfPath().replaceAll("^/+", "");
+    if (!path.endsWith(GZIP_FILE_EXTENSION) || path.contains("..")) {
+      rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+    VirtualFile report = build.getArtifactManager().root().child(path);
+    if (!report.isFile()) {
+      rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+
+    rsp.setContentType("application/json;charset=UTF-8");
+    rsp.setHeader("Vary", "Accept-Encoding");
+    String acceptEncoding = req.getHeader("Accept-Encoding");
+    try (InputStream in = report.open()) {
+      if (null != acceptEncoding && acceptEncoding.contains("gzip")) {
+        rsp.setHeader("Content-Encoding", "gzip");
+        rsp.setContentLengthLong(report.length());
+        IOUtils.copy(in, rsp.getOutputStream());
+      } else {
+        IOUtils.copy(new GZIPInputStream(in), rsp.getOutputStream());
+      }
+    }
+  }
+
+  /**
+   * Serves a page of the policy evaluation report table, see {@link #serveTable(String, StaplerRequest, StaplerResponse)}
+   */
+  public void doGatesTable(StaplerRequest req, StaplerResponse rsp) throws IOException {
+    serveTable(gateTableFileName, req, rsp);
+  }
+
+  /**
+   * Serves a page of the vulnerability table, see {@link #serveTable(String, StaplerRequest, StaplerResponse)}. Rows can be filtered
+   * with the facet[severity], facet[image] and facet[fix] parameters, the response includes the number of rows per facet value
+   */
+  public void doSecurityTable(StaplerRequest req, StaplerResponse rsp) throws IOException {
+    serveTable(cveTableFileName, req, rsp);
+  }
+
+  /**
+   * Answers a DataTables server-side processing request with a page of a report table. Only the first order column is honored
+   */
+  private void serveTable(String tableFileName, StaplerRequest req, StaplerResponse rsp) throws IOException {
+    build.checkPermission(Run.ARTIFACTS);
+
+    ReportTable table = getTable(tableFileName);
+    if (null == table) {
+      rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+
+    Map<String, String> filters = new HashMap<>();
+    for (String facet : table.getFacetNames()) {
+      String value = req.getParameter("facet[" + facet + "]");
+      if (null != value && !value.isEmpty()) {
+        filters.put(facet, value);
+      }
+    }
+    int draw = intParameter(req, "draw", 0);
+    int start = intParameter(req, "start", 0);
+    int length = intParameter(req, "length", 10);
+    int column = intParameter(req, "order[0][column]", -1);
+    boolean ascending = !"desc".equals(req.getParameter("order[0][dir]"));
+
+    rsp.setContentType("application/json;charset=UTF-8");
+    rsp.setHeader("Cache-Control", "no-cache");
+    PrintWriter out = rsp.getWriter();
+    table.writePage(out, draw, start, length, req.getParameter("search[value]"), filters, column, ascending);
+    out.flush();
+  }
+
+  /**
+   * @return report table of this build, read from the artifacts once and kept as long as memory allows. Null if there is no table
+   */
+  private synchronized ReportTable getTable(String tableFileName) throws IOException {
+    if (null == tableFileName) {
+      return null;
+    }
+    if (null == tables) {
+      tables = new HashMap<>();
+    }
+    SoftReference<ReportTable> cached = tables.get(tableFileName);
+    ReportTable table = null != cached ? cached.get() : null;
+    if (null == table) {
+      table = ReportTable.read(build.getArtifactManager().root().child(jenkinsOutputDirName), tableFileName);
+      tables.put(tableFileName, new SoftReference<>(table));
+    }
+    return table;
+  }
+
+  private static int intParameter(StaplerRequest req, String name, int defaultValue) {
+    String value = req.getParameter(name);
+    if (null == value) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * @return URL of a report relative to the Anchore report page. Compressed reports are served by {@link #doReport(StaplerRequest,
+   * StaplerResponse)}, others straight from the artifacts
+   */
+  private static String reportUrl(String jenkinsOutputDirName, String fileName) {
+    if (fileName.endsWith(GZIP_FILE_EXTENSION)) {
+      return "report/" + jenkinsOutputDirName + "/" + fileName;
+    }
+    return "../artifact/" + jenkinsOutputDirName + "/" + fileName;
+  }
+
+  /**
+   * @return final actions of the images and action counts of the findings, empty if there is no summary or it cannot be read
+   */
+  private String renderSummaryLine() {
+    JSONArray rows;
+    try {
+      JSONObject summary = getGateSummary();
+      rows = null != summary ? summary.optJSONArray("rows") : null;
+    } catch (RuntimeException e) {
+      LOG.log(Level.FINE, "Failed to parse Anchore policy evaluation summary", e);
+      return "";
+    }
+    if (null == rows || rows.isEmpty()) {
+      return "";
+    }
+    int stop = 0, warn = 0, go = 0;
+    for (int i = 0; i < rows.size(); i++) {
+      switch (rows.getJSONObject(i).optString(GATE_SUMMARY_COLUMN.Final_Action.toString(), "").toLowerCase()) {
+        case "stop":
+          stop++;
+          break;
+        case "warn":
+          warn++;
+          break;
+        case "go":
+          go++;
+          break;
+        default:
+          break;
+      }
+    }
+    return rows.size() + " image(s): " + stop + " stop, " + warn + " warn, " + go + " go. Policy findings: " + stopActionCount
+        + " stop, " + warnActionCount + " warn, " + goActionCount + " go";
+  }
+
   private static String encodeURL(String s) {
     if (s == null) {
       return s;
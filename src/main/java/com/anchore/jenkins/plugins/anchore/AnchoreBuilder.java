@@ -2,6 +2,7 @@ package com.anchore.jenkins.plugins.anchore;
 
 
 import com.anchore.jenkins.plugins.anchore.Util.GATE_ACTION;
+import com.anchore.jenkins.plugins.anchore.Util.POLL_STRATEGY;
 import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
@@ -22,6 +23,8 @@ import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import hudson.util.Secret;
 import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
@@ -29,7 +32,6 @@ import javax.annotation.Nonnull;
 import jenkins.model.Jenkins;
 import jenkins.tasks.SimpleBuildStep;
 import net.sf.json.JSONObject;
-import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
@@ -51,7 +53,9 @@ import org.kohsuke.stapler.StaplerRequest;
  * start an instance of the anchore/jenkins:latest docker container named 'jenkins_anchore' by default, on each host that runs a
  * jenkins job that includes an Anchore Container Image Scanner step.</li> </ol>
  */
-public class AnchoreBuilder extends Builder implements SimpleBuildStep {
+public class AnchoreBuilder extends Builder implements SimpleBuildStep, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   //  Log handler for logging above INFO level events to jenkins log
   private static final Logger LOG = Logger.getLogger(AnchoreBuilder.class.getName());
@@ -60,6 +64,10 @@ public class AnchoreBuilder extends Builder implements SimpleBuildStep {
   private String name;
   private String engineRetries = DescriptorImpl.DEFAULT_ENGINE_RETRIES;
   private String engineRetryInterval = DescriptorImpl.DEFAULT_ENGINE_RETRY_INTERVAL;
+  private String engineConcurrency = DescriptorImpl.DEFAULT_ENGINE_CONCURRENCY;
+  private String pollStrategy = DescriptorImpl.DEFAULT_POLL_STRATEGY;
+  private String pollTimeout = DescriptorImpl.DEFAULT_POLL_TIMEOUT;
+  private String pollMaxInterval = DescriptorImpl.DEFAULT_POLL_MAX_INTERVAL;
   private boolean bailOnFail = DescriptorImpl.DEFAULT_BAIL_ON_FAIL;
   private boolean bailOnPluginFail = DescriptorImpl.DEFAULT_BAIL_ON_PLUGIN_FAIL;
   private String policyBundleId = DescriptorImpl.DEFAULT_POLICY_BUNDLE_ID;
@@ -67,6 +75,10 @@ public class AnchoreBuilder extends Builder implements SimpleBuildStep {
   private boolean autoSubscribeTagUpdates = DescriptorImpl.DEFAULT_AUTOSUBSCRIBE_TAG_UPDATES;
   private boolean forceAnalyze = DescriptorImpl.DEFAULT_FORCE_ANALYZE;
   private boolean excludeFromBaseImage = DescriptorImpl.DEFAULT_EXCLUDE_FROM_BASE_IMAGE;
+  private boolean cacheResults = DescriptorImpl.DEFAULT_CACHE_RESULTS;
+  private boolean archiveReportsDirectly = DescriptorImpl.DEFAULT_ARCHIVE_REPORTS_DIRECTLY;
+  private boolean compressReports = DescriptorImpl.DEFAULT_COMPRESS_REPORTS;
+  private boolean compactReports = DescriptorImpl.DEFAULT_COMPACT_REPORTS;
 
   // Override global config. Supported for anchore-enterprise mode config only
   private String anchoreui = DescriptorImpl.EMPTY_STRING;
@@ -90,6 +102,22 @@ public class AnchoreBuilder extends Builder implements SimpleBuildStep {
     return engineRetryInterval;
   }
 
+  public String getEngineConcurrency() {
+    return engineConcurrency;
+  }
+
+  public String getPollStrategy() {
+    return pollStrategy;
+  }
+
+  public String getPollTimeout() {
+    return pollTimeout;
+  }
+
+  public String getPollMaxInterval() {
+    return pollMaxInterval;
+  }
+
   public boolean getBailOnFail() {
     return bailOnFail;
   }
@@ -118,6 +146,22 @@ public class AnchoreBuilder extends Builder implements SimpleBuildStep {
     return excludeFromBaseImage;
   }
 
+  public boolean getCacheResults() {
+    return cacheResults;
+  }
+
+  public boolean getArchiveReportsDirectly() {
+    return archiveReportsDirectly;
+  }
+
+  public boolean getCompressReports() {
+    return compressReports;
+  }
+
+  public boolean getCompactReports() {
+    return compactReports;
+  }
+
   public String getAnchoreui() {
     return anchoreui;
   }
@@ -149,6 +193,26 @@ public class AnchoreBuilder extends Builder implements SimpleBuildStep {
     this.engineRetryInterval = engineRetryInterval;
   }
 
+  @DataBoundSetter
+  public void setEngineConcurrency(String engineConcurrency) {
+    this.engineConcurrency = engineConcurrency;
+  }
+
+  @DataBoundSetter
+  public void setPollStrategy(String pollStrategy) {
+    this.pollStrategy = pollStrategy;
+  }
+
+  @DataBoundSetter
+  public void setPollTimeout(String pollTimeout) {
+    this.pollTimeout = pollTimeout;
+  }
+
+  @DataBoundSetter
+  public void setPollMaxInterval(String pollMaxInterval) {
+    this.pollMaxInterval = pollMaxInterval;
+  }
+
   @DataBoundSetter
   public void setBailOnFail(boolean bailOnFail) {
     this.bailOnFail = bailOnFail;
@@ -184,6 +248,26 @@ public class AnchoreBuilder extends Builder implements SimpleBuildStep {
     this.excludeFromBaseImage = excludeFromBaseImage;
   }
 
+  @DataBoundSetter
+  public void setCacheResults(boolean cacheResults) {
+    this.cacheResults = cacheResults;
+  }
+
+  @DataBoundSetter
+  public void setArchiveReportsDirectly(boolean archiveReportsDirectly) {
+    this.archiveReportsDirectly = archiveReportsDirectly;
+  }
+
+  @DataBoundSetter
+  public void setCompressReports(boolean compressReports) {
+    this.compressReports = compressReports;
+  }
+
+  @DataBoundSetter
+  public void setCompactReports(boolean compactReports) {
+    this.compactReports = compactReports;
+  }
+
   @DataBoundSetter
   public void setAnchoreui(String anchoreui) {
     this.anchoreui = anchoreui;
@@ -233,61 +317,10 @@ public class AnchoreBuilder extends Builder implements SimpleBuildStep {
 
     try {
 
-      /* Fetch Jenkins creds first, can't push this lower down the chain since it requires Jenkins instance object */
-      String engineuser = null;
-      String enginepass = null;
-      if (!Strings.isNullOrEmpty(engineCredentialsId)) {
-        console.logDebug("Found build override for anchore-enterprise credentials. Processing Jenkins credential ID ");
-        try {
-          StandardUsernamePasswordCredentials creds = CredentialsProvider
-              .findCredentialById(engineCredentialsId, StandardUsernamePasswordCredentials.class, run,
-                  Collections.<DomainRequirement>emptyList());
-          if (null != creds) {
-            engineuser = creds.getUsername();
-            enginepass = creds.getPassword().getPlainText();
-          } else {
-            throw new AbortException("Cannot find Jenkins credentials by ID: \'" + engineCredentialsId
-                + "\'. Ensure credentials are defined in Jenkins before using them");
-          }
-        } catch (AbortException e) {
-          throw e;
-        } catch (Exception e) {
-          console.logError("Error looking up Jenkins credentials by ID: \'" + engineCredentialsId + "\'", e);
-          throw new AbortException("Error looking up Jenkins credentials by ID: \'" + engineCredentialsId);
-        }
-      }
-
-      String anchoreui = globalConfig.getAnchoreui();
-
       /* Instantiate config and a new build worker */
-      config = new BuildConfig(name, engineRetries, engineRetryInterval, bailOnFail,
-          bailOnPluginFail, policyBundleId, annotations, autoSubscribeTagUpdates, forceAnalyze, excludeFromBaseImage, globalConfig.getDebug(), anchoreui,
-          // messy build time overrides, ugh!
-          !Strings.isNullOrEmpty(engineurl) ? engineurl : globalConfig.getEngineurl(),
-          !Strings.isNullOrEmpty(engineuser) ? engineuser : globalConfig.getEngineuser(),
-          !Strings.isNullOrEmpty(enginepass) ? enginepass : globalConfig.getEnginepass().getPlainText(),
-          !Strings.isNullOrEmpty(engineaccount) ? engineaccount : globalConfig.getEngineaccount(),
-          isEngineverifyOverrride ? engineverify : globalConfig.getEngineverify());
+      config = createBuildConfig(run, console);
       worker = new BuildWorker(run, workspace, launcher, listener, config);
 
-      if (Strings.isNullOrEmpty(anchoreui)) {
-        console.logInfo("Anchore UI URL is not set. Links to Anchore UI will not be available");
-      }
-      
-      /* Log any build time overrides are at play */
-      if (!Strings.isNullOrEmpty(engineurl)) {
-        console.logInfo("Build override set for Anchore Engine URL");
-      }
-      if (!Strings.isNullOrEmpty(engineuser) && !Strings.isNullOrEmpty(enginepass)) {
-        console.logInfo("Build override set for Anchore Engine credentials");
-      }
-      if (!Strings.isNullOrEmpty(engineaccount)) {
-        console.logInfo("Build override set for Anchore Engine account");
-      }
-      if (isEngineverifyOverrride) {
-        console.logInfo("Build override set for Anchore Engine verify SSL");
-      }
-
       /* Run analysis */
       worker.runAnalyzer();
 
@@ -345,12 +378,118 @@ public class AnchoreBuilder extends Builder implements SimpleBuildStep {
     }
   }
 
+  /**
+   * Captures a snapshot of the global and step configuration, resolving Jenkins credentials and build time overrides
+   *
+   * @param run build the credentials are looked up for
+   * @param console build console logger
+   * @return configuration for a single execution of the step
+   * @throws AbortException if the credentials cannot be resolved or the polling options are invalid
+   */
+  BuildConfig createBuildConfig(Run<?, ?> run, ConsoleLog console) throws AbortException {
+    DescriptorImpl globalConfig = getDescriptor();
+
+    /* Fetch Jenkins creds first, can't push this lower down the chain since it requires Jenkins instance object */
+    String engineuser = null;
+    String enginepass = null;
+    if (!Strings.isNullOrEmpty(engineCredentialsId)) {
+      console.logDebug("Found build override for anchore-enterprise credentials. Processing Jenkins credential ID ");
+      try {
+        StandardUsernamePasswordCredentials creds = CredentialsProvider
+            .findCredentialById(engineCredentialsId, StandardUsernamePasswordCredentials.class, run,
+                Collections.<DomainRequirement>emptyList());
+        if (null != creds) {
+          engineuser = creds.getUsername();
+          enginepass = creds.getPassword().getPlainText();
+        } else {
+          throw new AbortException("Cannot find Jenkins credentials by ID: \'" + engineCredentialsId
+              + "\'. Ensure credentials are defined in Jenkins before using them");
+        }
+      } catch (AbortException e) {
+        throw e;
+      } catch (Exception e) {
+        console.logError("Error looking up Jenkins credentials by ID: \'" + engineCredentialsId + "\'", e);
+        throw new AbortException("Error looking up Jenkins credentials by ID: \'" + engineCredentialsId);
+      }
+    }
+
+    String anchoreui = globalConfig.getAnchoreui();
+
+    /* Validate polling options, pipelines bypass form validation */
+    String concurrency =
+        !Strings.isNullOrEmpty(engineConcurrency) ? engineConcurrency.trim() : DescriptorImpl.DEFAULT_ENGINE_CONCURRENCY;
+    checkNumber("engineConcurrency", concurrency, 1);
+    POLL_STRATEGY strategy = POLL_STRATEGY.fixed;
+    if (!Strings.isNullOrEmpty(pollStrategy)) {
+      try {
+        strategy = POLL_STRATEGY.valueOf(pollStrategy.trim());
+      } catch (IllegalArgumentException e) {
+        throw new AbortException("Invalid pollStrategy \'" + pollStrategy + "\'. Valid values are " + Arrays.toString(
+            POLL_STRATEGY.values()));
+      }
+    }
+    String timeout = !Strings.isNullOrEmpty(pollTimeout) ? pollTimeout.trim() : DescriptorImpl.DEFAULT_POLL_TIMEOUT;
+    if (!timeout.isEmpty()) {
+      checkNumber("pollTimeout", timeout, 0);
+    }
+    String maxInterval = !Strings.isNullOrEmpty(pollMaxInterval) ? pollMaxInterval.trim() : DescriptorImpl.DEFAULT_POLL_MAX_INTERVAL;
+    checkNumber("pollMaxInterval", maxInterval, 1);
+
+    /* Instantiate config */
+    BuildConfig config = new BuildConfig(name, engineRetries, engineRetryInterval, concurrency, strategy, timeout, maxInterval,
+        bailOnFail, bailOnPluginFail, policyBundleId, annotations, autoSubscribeTagUpdates, forceAnalyze, excludeFromBaseImage,
+        cacheResults, archiveReportsDirectly, compressReports, compactReports, globalConfig.getDebug(), anchoreui,
+        // messy build time overrides, ugh!
+        !Strings.isNullOrEmpty(engineurl) ? engineurl : globalConfig.getEngineurl(),
+        !Strings.isNullOrEmpty(engineuser) ? engineuser : globalConfig.getEngineuser(),
+        !Strings.isNullOrEmpty(enginepass) ? enginepass : globalConfig.getEnginepass().getPlainText(),
+        !Strings.isNullOrEmpty(engineaccount) ? engineaccount : globalConfig.getEngineaccount(),
+        isEngineverifyOverrride ? engineverify : globalConfig.getEngineverify());
+
+    if (Strings.isNullOrEmpty(anchoreui)) {
+      console.logInfo("Anchore UI URL is not set. Links to Anchore UI will not be available");
+    }
+
+    /* Log any build time overrides are at play */
+    if (!Strings.isNullOrEmpty(engineurl)) {
+      console.logInfo("Build override set for Anchore Engine URL");
+    }
+    if (!Strings.isNullOrEmpty(engineuser) && !Strings.isNullOrEmpty(enginepass)) {
+      console.logInfo("Build override set for Anchore Engine credentials");
+    }
+    if (!Strings.isNullOrEmpty(engineaccount)) {
+      console.logInfo("Build override set for Anchore Engine account");
+    }
+    if (isEngineverifyOverrride) {
+      console.logInfo("Build override set for Anchore Engine verify SSL");
+    }
+
+    return config;
+  }
+
+  /**
+   * @param option name of the option, for the error message
+   * @param value value of the option
+   * @param min smallest valid value
+   * @throws AbortException if the value is not a whole number of at least min
+   */
+  private static void checkNumber(String option, String value, int min) throws AbortException {
+    try {
+      if (Integer.parseInt(value) >= min) {
+        return;
+      }
+    } catch (NumberFormatException e) {
+      // fall through
+    }
+    throw new AbortException("Invalid " + option + " \'" + value + "\'. Please enter a whole number of at least " + min);
+  }
+
   @Override
   public DescriptorImpl getDescriptor() {
     return (DescriptorImpl) super.getDescriptor();
   }
 
-  @Symbol("anchore") // For Jenkins pipeline workflow. This lets pipeline refer to step using the defined identifier
+  // No symbol, the "anchore" pipeline function is AnchoreStep. Pipelines may still run this step with step([$class: 'AnchoreBuilder'])
   @Extension // This indicates to Jenkins that this is an implementation of an extension point.
   public static final class DescriptorImpl extends BuildStepDescriptor<Builder> {
 
@@ -358,6 +497,10 @@ public class AnchoreBuilder extends Builder implements SimpleBuildStep {
     public static final String DEFAULT_NAME = "anchore_images";
     public static final String DEFAULT_ENGINE_RETRIES = "300";
     public static final String DEFAULT_ENGINE_RETRY_INTERVAL = "5";
+    public static final String DEFAULT_ENGINE_CONCURRENCY = "1";
+    public static final String DEFAULT_POLL_STRATEGY = "fixed";
+    public static final String DEFAULT_POLL_TIMEOUT = "";
+    public static final String DEFAULT_POLL_MAX_INTERVAL = "30";
     public static final boolean DEFAULT_BAIL_ON_FAIL = true;
     public static final boolean DEFAULT_BAIL_ON_PLUGIN_FAIL = true;
     public static final String DEFAULT_PLUGIN_MODE = "anchoreengine";
@@ -366,6 +509,10 @@ public class AnchoreBuilder extends Builder implements SimpleBuildStep {
     public static final boolean DEFAULT_AUTOSUBSCRIBE_TAG_UPDATES = true;
     public static final boolean DEFAULT_FORCE_ANALYZE = false;
     public static final boolean DEFAULT_EXCLUDE_FROM_BASE_IMAGE = false;
+    public static final boolean DEFAULT_CACHE_RESULTS = false;
+    public static final boolean DEFAULT_ARCHIVE_REPORTS_DIRECTLY = false;
+    public static final boolean DEFAULT_COMPRESS_REPORTS = false;
+    public static final boolean DEFAULT_COMPACT_REPORTS = false;
 
     // Global configuration
     private boolean debug;
@@ -484,6 +631,68 @@ public class AnchoreBuilder extends Builder implements SimpleBuildStep {
       }
     }
 
+    /**
+     * Performs on-the-fly validation of the form field 'engineConcurrency'
+     *
+     * @param value This parameter receives the value that the user has typed in the 'Anchore Enterprise concurrent image requests' box
+     * @return Indicates the outcome of the validation. This is sent to the browser
+     */
+    @SuppressWarnings("unused")
+    public FormValidation doCheckEngineConcurrency(@QueryParameter String value) {
+      try {
+        if (Strings.isNullOrEmpty(value) || Integer.parseInt(value) > 0) {
+          return FormValidation.ok();
+        }
+      } catch (NumberFormatException e) {
+        // fall through
+      }
+      return FormValidation.error("Please enter a positive number");
+    }
+
+    /**
+     * Performs on-the-fly validation of the form field 'pollTimeout'
+     *
+     * @param value This parameter receives the value that the user has typed in the 'Anchore Enterprise polling timeout' box
+     * @return Indicates the outcome of the validation. This is sent to the browser
+     */
+    @SuppressWarnings("unused")
+    public FormValidation doCheckPollTimeout(@QueryParameter String value) {
+      try {
+        if (Strings.isNullOrEmpty(value) || Integer.parseInt(value.trim()) >= 0) {
+          return FormValidation.ok();
+        }
+      } catch (NumberFormatException e) {
+        // fall through
+      }
+      return FormValidation.error("Please enter a number of seconds, or leave empty for no timeout");
+    }
+
+    /**
+     * Performs on-the-fly validation of the form field 'pollMaxInterval'
+     *
+     * @param value This parameter receives the value that the user has typed in the 'Anchore Enterprise maximum polling interval' box
+     * @return Indicates the outcome of the validation. This is sent to the browser
+     */
+    @SuppressWarnings("unused")
+    public FormValidation doCheckPollMaxInterval(@QueryParameter String value) {
+      try {
+        if (Strings.isNullOrEmpty(value) || Integer.parseInt(value.trim()) > 0) {
+          return FormValidation.ok();
+        }
+      } catch (NumberFormatException e) {
+        // fall through
+      }
+      return FormValidation.error("Please enter a positive number");
+    }
+
+    @SuppressWarnings("unused")
+    public ListBoxModel doFillPollStrategyItems() {
+      ListBoxModel items = new ListBoxModel();
+      items.add("Fixed interval (retries and retry interval)", POLL_STRATEGY.fixed.toString());
+      items.add("Adaptive (exponential backoff up to max interval)", POLL_STRATEGY.adaptive.toString());
+      return items;
+    }
+
     @SuppressWarnings("unused")
     public ListBoxModel doFillEngineCredentialsIdItems(@QueryParameter String credentialsId) {
       StandardListBoxModel result = new StandardListBoxModel();
@@ -1,19 +1,20 @@
 package com.anchore.jenkins.plugins.anchore;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import hudson.Functions;
 import hudson.model.Action;
 import hudson.model.Job;
 import hudson.model.Run;
 import hudson.util.Area;
-import hudson.util.ColorPalette;
 import hudson.util.DataSetBuilder;
 import hudson.util.Graph;
 import hudson.util.ShiftedCategoryAxis;
 import hudson.util.StackedAreaRenderer2;
-import hudson.util.ChartUtil.NumberOnlyBuildLabel;
 import jenkins.model.Jenkins;
 
 import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartRenderingInfo;
+import org.jfree.chart.ChartUtilities;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.CategoryAxis;
 import org.jfree.chart.axis.CategoryLabelPositions;
@@ -27,19 +28,57 @@ import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
+import javax.imageio.ImageIO;
 import javax.servlet.http.HttpServletResponse;
 
 import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Project action object which displays the trend report on the project top page.
  */
 public class AnchoreProjectAction implements Action {
+  /**
+   * Rendered trend graphs, most recently used last. Views that list many jobs request a graph per job on every page load, rendering
+   * one takes a chart and a rasterization on the controller
+   */
+  private static final Map<String, Rendering> RENDERINGS = Collections.synchronizedMap(new LinkedHashMap<String, Rendering>(16,
+      0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Rendering> eldest) {
+      return size() > Integer.getInteger(AnchoreProjectAction.class.getName() + ".anchore.trend.cache", 50);
+    }
+  });
+
+  /** Largest width or height of a rendered trend graph */
+  private static final int MAX_GRAPH_SIZE = 2000;
+
+  /**
+   * Trend graph rendered at a given size: the PNG image and its image map
+   */
+  private final static class Rendering {
+    private final byte[] png;
+    private final String map;
+
+    private Rendering(byte[] png, String map) {
+      this.png = png;
+      this.map = map;
+    }
+  }
+
   private final static class AnchoreTrendGraph extends Graph {
-    private static final int MAX_HISTORY_DEFAULT = 100;
-    private AnchoreAction base;
+    private List<AnchoreTrendIndex.Record> records;
+    private TrendSeries series;
     private String relPath;
+    private String cacheKey;
+    private long timestamp;
+    private Area defaultSize;
 
     private static Area calcDefaultSize() {
       Area res = Functions.getScreenResolution();
@@ -50,40 +89,104 @@ public class AnchoreProjectAction implements Action {
     }
     
     /**
-     * Initialize the trend graph from a base AnchoreAction using a calculated default size.
+     * Initialize the trend graph from the trend index of the job using a calculated default size.
      *
-     * @param base the most recent AnchoreAction up to which the trend is shown
+     * @param index trend index of the job
+     * @param series series to show
      * @param relPath URL rel path for tooltip URLs
+     * @param job job, identifies the graph in the rendering cache
      */
-    protected AnchoreTrendGraph(AnchoreAction base, String relPath){
-      this(base, calcDefaultSize(), relPath);
+    protected AnchoreTrendGraph(AnchoreTrendIndex index, TrendSeries series, String relPath, Job<?,?> job){
+      this(index, series, calcDefaultSize(), relPath, job);
     }
 
     /**
-     * Initialize the trend graph from a base AnchoreAction using a given default size.
+     * Initialize the trend graph from the trend index of the job using a given default size.
      *
-     * @param base the most recent AnchoreAction up to which the trend is shown
+     * @param index trend index of the job
+     * @param series series to show
      * @param defaultSize graph's default size
      * @param relPath URL rel path for tooltip URLs
+     * @param job job, identifies the graph in the rendering cache
      */
-    private AnchoreTrendGraph(AnchoreAction base, Area defaultSize, String relPath){
-      super(base.getBuild().getTimestamp(), defaultSize.width, defaultSize.height);
-      this.base = base;
+    private AnchoreTrendGraph(AnchoreTrendIndex index, TrendSeries series, Area defaultSize, String relPath, Job<?,?> job){
+      super(index.getLastModified(), defaultSize.width, defaultSize.height);
+      this.records = index.getRecords();
+      this.series = series;
       this.relPath = relPath;
+      this.timestamp = index.getLastModified();
+      this.defaultSize = defaultSize;
+      // The index changes whenever a build is added or deleted, so the last build number and the index time identify the data
+      this.cacheKey = job.getFullName() + "#" + records.get(0).getNumber() + "@" + timestamp;
+    }
+
+    @Override
+    public void doPng(StaplerRequest req, StaplerResponse rsp) throws IOException {
+      if (req.checkIfModified(timestamp, rsp)) {
+        return;
+      }
+      Rendering rendering = render(req);
+      rsp.setContentType("image/png");
+      rsp.setContentLength(rendering.png.length);
+      rsp.getOutputStream().write(rendering.png);
+    }
+
+    @Override
+    public void doMap(StaplerRequest req, StaplerResponse rsp) throws IOException {
+      if (req.checkIfModified(timestamp, rsp)) {
+        return;
+      }
+      Rendering rendering = render(req);
+      rsp.setContentType("text/plain;charset=UTF-8");
+      rsp.getWriter().println(rendering.map);
+    }
+
+    /**
+     * @return graph at the size of the request, rendered once per size as long as it stays in the rendering cache
+     */
+    private Rendering render(StaplerRequest req) throws IOException {
+      int width = sizeParameter(req, "width", defaultSize.width);
+      int height = sizeParameter(req, "height", defaultSize.height);
+      String key = cacheKey + ":" + series.getName() + ":" + width + "x" + height + ":" + relPath;
+      Rendering rendering = RENDERINGS.get(key);
+      if (null == rendering) {
+        ChartRenderingInfo info = new ChartRenderingInfo();
+        BufferedImage image = createGraph().createBufferedImage(width, height, info);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "PNG", png);
+        rendering = new Rendering(png.toByteArray(), ChartUtilities.getImageMap("map", info));
+        RENDERINGS.put(key, rendering);
+      }
+      return rendering;
+    }
+
+    private static int sizeParameter(StaplerRequest req, String name, int defaultValue) {
+      String value = req.getParameter(name);
+      if (null == value) {
+        return defaultValue;
+      }
+      try {
+        return Math.max(1, Math.min(MAX_GRAPH_SIZE, Integer.parseInt(value.trim())));
+      } catch (NumberFormatException e) {
+        return defaultValue;
+      }
     }
 
     private CategoryDataset buildDataSet() {
-      DataSetBuilder<String, NumberOnlyBuildLabel> dsb = new DataSetBuilder<>();
+      DataSetBuilder<String, BuildLabel> dsb = new DataSetBuilder<>();
 
-      int cap = Integer.getInteger(AnchoreAction.class.getName() + ".anchore.trend.max", AnchoreTrendGraph.MAX_HISTORY_DEFAULT);
-      int count = 0;
-      for (AnchoreAction a = this.base; a != null; a = a.getPreviousResult()) {
-        if (++count > cap) {
-          break;
+      String[] labels = series.getLabels();
+      for (AnchoreTrendIndex.Record r : records.subList(0, Math.min(records.size(), AnchoreTrendIndex.MAX_HISTORY))) {
+        int[] values = series.values(r);
+        if (values == null) {
+          // build recorded before the counters of the series were kept
+          continue;
+        }
+        BuildLabel label = new BuildLabel(r);
+        for (int i = 0; i < values.length; i++) {
+          // row keys sort in the order of the labels
+          dsb.add(values[i], i + "_" + labels[i], label);
         }
-        dsb.add(a.getGoActionCount(), "0_go", new NumberOnlyBuildLabel(a.getBuild()));
-        dsb.add(a.getWarnActionCount(), "1_warn", new NumberOnlyBuildLabel(a.getBuild()));
-        dsb.add(a.getStopActionCount(), "2_stop", new NumberOnlyBuildLabel(a.getBuild()));
       }
       return dsb.build();
     }
@@ -125,27 +228,20 @@ public class AnchoreProjectAction implements Action {
       StackedAreaRenderer ar = new StackedAreaRenderer2() {
         @Override
         public String generateURL(CategoryDataset data, int row, int column) {
-          NumberOnlyBuildLabel label = (NumberOnlyBuildLabel) data.getColumnKey(column);
-          return relPath + label.getRun().getNumber() + "/anchore-results/";
+          BuildLabel label = (BuildLabel) data.getColumnKey(column);
+          return relPath + label.record.getNumber() + "/anchore-results/";
         }
     
         @Override
         public String generateToolTip(CategoryDataset data, int row, int column) {
-          NumberOnlyBuildLabel label = (NumberOnlyBuildLabel) data.getColumnKey(column);
-          AnchoreAction a = label.getRun().getAction(AnchoreAction.class);
-          switch (row) {
-            case 0:
-              return label.getRun().getDisplayName() + ": " + a.getGoActionCount() + " Go Actions";
-            case 1:
-              return label.getRun().getDisplayName() + ": " + a.getWarnActionCount() + " Warn Actions";
-            default:
-              return label.getRun().getDisplayName() + ": " + a.getStopActionCount() + " Stop Actions";
-          }
+          BuildLabel label = (BuildLabel) data.getColumnKey(column);
+          return label + ": " + series.values(label.record)[row] + " " + series.getLabels()[row];
         }
       };
-      ar.setSeriesPaint(0, ColorPalette.BLUE); // Go
-      ar.setSeriesPaint(1, ColorPalette.YELLOW); // Warn
-      ar.setSeriesPaint(2, ColorPalette.RED); // Stop
+      Color[] colors = series.getColors();
+      for (int i = 0; i < colors.length; i++) {
+        ar.setSeriesPaint(i, colors[i]);
+      }
       plot.setRenderer(ar);
 
       plot.setInsets(new RectangleInsets(0, 0, 0, 5.0));
@@ -153,6 +249,37 @@ public class AnchoreProjectAction implements Action {
       return chart;
     }
   }
+
+  /**
+   * Category of a build in the trend graph, shown as the build number. Unlike NumberOnlyBuildLabel it needs no build record.
+   */
+  private final static class BuildLabel implements Comparable<BuildLabel> {
+    private final AnchoreTrendIndex.Record record;
+
+    private BuildLabel(AnchoreTrendIndex.Record record) {
+      this.record = record;
+    }
+
+    @Override
+    public int compareTo(BuildLabel that) {
+      return Integer.compare(this.record.getNumber(), that.record.getNumber());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof BuildLabel && ((BuildLabel) o).record.getNumber() == record.getNumber();
+    }
+
+    @Override
+    public int hashCode() {
+      return record.getNumber();
+    }
+
+    @Override
+    public String toString() {
+      return "#" + record.getNumber();
+    }
+  }
   
   /**
    * Parent that owns this action.
@@ -184,42 +311,37 @@ public class AnchoreProjectAction implements Action {
   }
   
   /**
-   * Redirects the index page to the last report.
+   * Redirects the index page to the report of the last completed build with an Anchore result.
    *
    * @param request Stapler request
    * @param response Stapler response
    * @throws IOException in case of an error
    */
   public void doIndex(final StaplerRequest request, final StaplerResponse response) throws IOException {
-    Run<?, ?> lastRun = this.job.getLastCompletedBuild();
-    if (lastRun != null) {
-      AnchoreAction a = lastRun.getAction(AnchoreAction.class);
-      if (a != null)
-        response.sendRedirect2(String.format("../%d/%s", lastRun.getNumber(), a.getUrlName()));
+    AnchoreAction a = getLastAnchoreAction();
+    if (a != null) {
+      response.sendRedirect2(String.format("../%d/%s", a.getBuild().getNumber(), a.getUrlName()));
     }
   }
 
   /**
+   * Looks up the latest completed build with an Anchore result from the number kept per job by {@link AnchoreTrendIndex}, which is
+   * updated as builds complete and are deleted. Only that build is loaded, whatever the number of builds without an Anchore result
+   * since. As the walk back from the last build used to, there is no result if the last successful build is more recent
+   *
    * @return the most current AnchoreAction of the associated job
    */
   public AnchoreAction getLastAnchoreAction() {
+    int number = AnchoreTrendIndex.lastBuildNumber(this.job);
     final Run<?,?> tb = this.job.getLastSuccessfulBuild();
-
-    Run<?,?> b = this.job.getLastBuild();
-    while (b != null) {
-      AnchoreAction a = b.getAction(AnchoreAction.class);
-      if (a != null && (!b.isBuilding())) {
-        return a;
-      }
-      if (b == tb) {
-        // no Anchore result available
-        return null;
-      }
-      b = b.getPreviousBuild();
+    if (number == 0 || (tb != null && tb.getNumber() > number)) {
+      // no Anchore result available
+      return null;
     }
-    return null;
+    Run<?,?> b = this.job.getBuildByNumber(number);
+    return b != null ? b.getAction(AnchoreAction.class) : null;
   }
-  
+
   private String getRelPath(StaplerRequest req) {
       String relPath = req.getParameter("rel");
       if (relPath == null) {
@@ -229,16 +351,106 @@ public class AnchoreProjectAction implements Action {
   }
   
   /**
-   * Generates the Anchore trend graph
+   * @return names and titles of the series the trend graph can show, for the series selector
+   */
+  public Map<String, String> getTrendSeries() {
+    Map<String, String> series = new LinkedHashMap<>();
+    for (TrendSeries s : TrendSeries.values()) {
+      series.put(s.getName(), s.getTitle());
+    }
+    return series;
+  }
+
+  /**
+   * @return true if the trend index of the job holds at least two builds, the minimum for a trend report
+   */
+  public boolean isTrendAvailable() {
+    return AnchoreTrendIndex.read(this.job).getRecords().size() >= 2;
+  }
+
+  /**
+   * Generates the Anchore trend graph from the trend index of the job, without loading any build. The series parameter selects the
+   * series to show, see {@link #getTrendSeries()}
    * @return graph object
    */
   public Graph getTrendGraph() {
-    final AnchoreAction a = getLastAnchoreAction();
-    if (a != null) {
-      return new AnchoreTrendGraph(a, getRelPath(Stapler.getCurrentRequest()));
+    final AnchoreTrendIndex index = AnchoreTrendIndex.read(this.job);
+    if (!index.getRecords().isEmpty()) {
+      StaplerRequest req = Stapler.getCurrentRequest();
+      return new AnchoreTrendGraph(index, TrendSeries.of(req.getParameter("series")), getRelPath(req), this.job);
     }else{
       Stapler.getCurrentResponse().setStatus(HttpServletResponse.SC_NOT_FOUND);
       return null;
     }
   }
+
+  /**
+   * Serves the trend of the job as JSON for charts drawn in the browser, oldest build first:
+   * <code>{"series":[{"name":"actions","title":"","labels":[],"colors":[]}],"builds":[{"number":1,"timestamp":0,"go":0,"warn":0,
+   * "stop":0,"actions":[0,0,0]}]}</code>. Each build holds the values of every series it recorded, under the name of the series.
+   * The ETag is derived from the last build number and the number of builds, so browsers revalidate cheaply and get the data again
+   * only after a build is added or deleted
+   *
+   * @param req Stapler request
+   * @param rsp Stapler response
+   * @throws IOException in case of an error
+   */
+  public void doTrendData(final StaplerRequest req, final StaplerResponse rsp) throws IOException {
+    List<AnchoreTrendIndex.Record> records = AnchoreTrendIndex.read(this.job).getRecords();
+    records = records.subList(0, Math.min(records.size(), AnchoreTrendIndex.MAX_HISTORY));
+
+    String etag = "\"" + (records.isEmpty() ? 0 : records.get(0).getNumber()) + "-" + records.size() + "\"";
+    rsp.setHeader("ETag", etag);
+    rsp.setHeader("Cache-Control", "private, no-cache");
+    if (etag.equals(req.getHeader("If-None-Match"))) {
+      rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    rsp.setContentType("application/json;charset=UTF-8");
+    try (JsonGenerator generator = ReportTableWriter.MAPPER.getFactory().createGenerator(rsp.getWriter())) {
+      generator.writeStartObject();
+      generator.writeArrayFieldStart("series");
+      for (TrendSeries series : TrendSeries.values()) {
+        generator.writeStartObject();
+        generator.writeStringField("name", series.getName());
+        generator.writeStringField("title", series.getTitle());
+        generator.writeArrayFieldStart("labels");
+        for (String label : series.getLabels()) {
+          generator.writeString(label);
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("colors");
+        for (Color color : series.getColors()) {
+          generator.writeString(String.format("#%06x", color.getRGB() & 0xffffff));
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+      generator.writeArrayFieldStart("builds");
+      for (int i = records.size() - 1; i >= 0; i--) {
+        AnchoreTrendIndex.Record r = records.get(i);
+        generator.writeStartObject();
+        generator.writeNumberField("number", r.getNumber());
+        generator.writeNumberField("timestamp", r.getTimestamp());
+        generator.writeNumberField("go", r.getGoActionCount());
+        generator.writeNumberField("warn", r.getWarnActionCount());
+        generator.writeNumberField("stop", r.getStopActionCount());
+        for (TrendSeries series : TrendSeries.values()) {
+          int[] values = series.values(r);
+          if (values != null) {
+            generator.writeArrayFieldStart(series.getName());
+            for (int value : values) {
+              generator.writeNumber(value);
+            }
+            generator.writeEndArray();
+          }
+        }
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    }
+  }
 }
@@ -0,0 +1,101 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import com.google.common.collect.ImmutableSet;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+import org.jenkinsci.plugins.structs.describable.DescribableModel;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.StaplerRequest;
+
+/**
+ * Pipeline implementation of the Anchore Container Image Scanner step. Takes the same parameters as {@link AnchoreBuilder}, but
+ * does not hold a thread while waiting for anchore-enterprise to analyze the images. See {@link AnchoreStepExecution}. The
+ * freestyle build step continues to be served by {@link AnchoreBuilder}
+ *
+ * <p>The configuration of the step is an {@link AnchoreBuilder}. Step parameters and the configuration form are bound to the build
+ * step by the descriptor, so options added to the build step are available to pipelines without repeating them here.</p>
+ */
+public class AnchoreStep extends Step implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final AnchoreBuilder builder;
+
+  @DataBoundConstructor
+  public AnchoreStep(String name) {
+    this(new AnchoreBuilder(name));
+  }
+
+  AnchoreStep(AnchoreBuilder builder) {
+    this.builder = builder;
+  }
+
+  public String getName() {
+    return builder.getName();
+  }
+
+  /**
+   * @return configuration of the step, used by config.jelly and for resolving the configuration of an execution
+   */
+  public AnchoreBuilder getBuilder() {
+    return builder;
+  }
+
+  @Override
+  public StepExecution start(StepContext context) throws Exception {
+    return new AnchoreStepExecution(this, context);
+  }
+
+  @Extension
+  public static final class DescriptorImpl extends StepDescriptor {
+
+    @Override
+    public String getFunctionName() {
+      return "anchore";
+    }
+
+    @Override
+    public String getDisplayName() {
+      return "Anchore Container Image Scanner";
+    }
+
+    @Override
+    public Set<? extends Class<?>> getRequiredContext() {
+      return ImmutableSet.of(Run.class, FilePath.class, Launcher.class, TaskListener.class);
+    }
+
+    @Override
+    public Step newInstance(Map<String, Object> arguments) throws Exception {
+      return new AnchoreStep(new DescribableModel<>(AnchoreBuilder.class).instantiate(arguments));
+    }
+
+    @Override
+    public AnchoreStep newInstance(StaplerRequest req, JSONObject formData) throws FormException {
+      return new AnchoreStep(req.bindJSON(AnchoreBuilder.class, formData));
+    }
+
+    @Override
+    public Map<String, Object> defineArguments(Step step) throws UnsupportedOperationException {
+      return DescribableModel.uninstantiate2_(((AnchoreStep) step).getBuilder()).toMap();
+    }
+
+    /**
+     * @return descriptor of the freestyle build step, the step configuration form and its validation are shared with it
+     */
+    public AnchoreBuilder.DescriptorImpl getBuilderDescriptor() {
+      return Jenkins.get().getDescriptorByType(AnchoreBuilder.DescriptorImpl.class);
+    }
+  }
+}
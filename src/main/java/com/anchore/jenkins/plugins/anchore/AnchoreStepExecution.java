@@ -0,0 +1,283 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import com.anchore.jenkins.plugins.anchore.Util.GATE_ACTION;
+import hudson.AbortException;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.init.Terminator;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.sf.json.JSONObject;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+
+/**
+ * Asynchronous execution of {@link AnchoreStep}. Images are submitted on a background thread and the wait for their analysis is then
+ * handed over to the {@link ImageAnalysisPoller}, so no thread is held while anchore-enterprise is busy analyzing. The step needs the
+ * workspace, so the executor of the enclosing node block stays allocated to the build meanwhile, and a resumed execution needs the
+ * workspace again. Policy evaluation and report generation run once all the images are analyzed.
+ *
+ * <p>Submission and evaluation run on a small thread pool owned by the plugin rather than on a shared Jenkins pool, so a burst of
+ * builds queues up here instead of starving other plugins. The pool size is tunable with the
+ * <code>com.anchore.jenkins.plugins.anchore.AnchoreStepExecution.threads</code> system property (default 4).</p>
+ *
+ * <p>The tag to digest mapping of the submitted images is persisted with the execution. If Jenkins restarts while waiting, the
+ * execution resumes polling those digests instead of submitting the images again.</p>
+ */
+public class AnchoreStepExecution extends StepExecution {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final Logger LOG = Logger.getLogger(AnchoreStepExecution.class.getName());
+
+  private static final int THREADS = Integer.getInteger(AnchoreStepExecution.class.getName() + ".threads", 4);
+  private static ExecutorService executor;
+
+  private final AnchoreStep step;
+  private Map<String, String> submittedImages; // null until the images are submitted
+
+  private transient BuildConfig config;
+  private transient BuildWorker worker;
+  private transient ConsoleLog console;
+  private transient Set<String> pendingTags;
+  private transient volatile List<CompletableFuture<JSONObject>> analysis;
+  private transient volatile Future<?> task;
+  private transient volatile boolean stopped;
+  private transient boolean completed;
+
+  AnchoreStepExecution(AnchoreStep step, StepContext context) {
+    super(context);
+    this.step = step;
+  }
+
+  @Override
+  public boolean start() throws Exception {
+    task = executor().submit(this::submit);
+    return false;
+  }
+
+  @Override
+  public void onResume() {
+    if (null == submittedImages) {
+      // Restarted before the images were submitted, nothing to resume
+      getContext().onFailure(new AbortException("Anchore Container Image Scanner step was interrupted by a Jenkins restart"));
+      return;
+    }
+    task = executor().submit(() -> {
+      try {
+        initialize();
+        console.logInfo("Resuming Anchore Container Image Scanner step after Jenkins restart");
+        worker.resumeSubmittedImages(submittedImages);
+        startPolling();
+      } catch (Exception e) {
+        handleFailure(e);
+      }
+    });
+  }
+
+  /**
+   * Shuts down the step threads. Invoked when Jenkins shuts down
+   */
+  @Terminator
+  public static synchronized void shutdown() {
+    if (null != executor) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  private static synchronized ExecutorService executor() {
+    if (null == executor) {
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+          new NamingThreadFactory(new DaemonThreadFactory(), "AnchoreStepExecution"));
+      pool.allowCoreThreadTimeOut(true);
+      executor = pool;
+    }
+    return executor;
+  }
+
+  @Override
+  public void stop(Throwable cause) throws Exception {
+    stopped = true;
+    cancelAnalysis();
+    Future<?> current = task;
+    if (null != current) {
+      current.cancel(true);
+    }
+    cleanup();
+    synchronized (this) {
+      if (completed) {
+        return;
+      }
+      completed = true;
+    }
+    getContext().onFailure(cause);
+  }
+
+  @Override
+  public String getStatus() {
+    if (null == submittedImages) {
+      return "submitting images to anchore-enterprise";
+    }
+    Set<String> pending = pendingTags;
+    return null != pending && !pending.isEmpty() ? "waiting for analysis of " + pending
+        : "evaluating images against anchore-enterprise policy";
+  }
+
+  private void initialize() throws Exception {
+    StepContext context = getContext();
+    Run<?, ?> run = context.get(Run.class);
+    TaskListener listener = context.get(TaskListener.class);
+    AnchoreBuilder builder = step.getBuilder();
+    console = new ConsoleLog("AnchorePlugin", listener.getLogger(), builder.getDescriptor().getDebug());
+    config = builder.createBuildConfig(run, console);
+    worker = new BuildWorker(run, context.get(FilePath.class), context.get(Launcher.class), listener, config);
+  }
+
+  private void submit() {
+    try {
+      initialize();
+      worker.runAnalyzer();
+
+      submittedImages = new LinkedHashMap<>(worker.getSubmittedImages());
+      getContext().saveState();
+
+      startPolling();
+    } catch (Exception e) {
+      handleFailure(e);
+    }
+  }
+
+  private void startPolling() {
+    pendingTags = Collections.synchronizedSet(new LinkedHashSet<>(submittedImages.keySet()));
+    console.logInfo("Waiting for anchore-enterprise to analyze " + pendingTags.size() + " image(s)");
+
+    // Analysis status is polled by the controller wide poller, nothing runs on behalf of this step until it completes the futures
+    ImageAnalysisPoller poller = ImageAnalysisPoller.get();
+    List<CompletableFuture<JSONObject>> futures = new ArrayList<>();
+    for (Map.Entry<String, String> entry : submittedImages.entrySet()) {
+      String tag = entry.getKey();
+      CompletableFuture<JSONObject> future = poller.awaitAnalysis(config, tag, entry.getValue(), PollSchedule.create(config), console);
+      future.whenComplete((image, t) -> {
+        if (null == t) {
+          console.logInfo("Analysis complete for " + tag);
+          pendingTags.remove(tag);
+        } else if (!(t instanceof CancellationException)) {
+          // Stop waiting for the other images
+          cancelAnalysis();
+          handleFailure(t instanceof Exception ? (Exception) t : new AbortException(t.getMessage()));
+        }
+      });
+      futures.add(future);
+    }
+    analysis = futures;
+
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenRun(() -> task = executor().submit(this::evaluate));
+  }
+
+  private void cancelAnalysis() {
+    List<CompletableFuture<JSONObject>> current = analysis;
+    if (null != current) {
+      for (CompletableFuture<JSONObject> future : current) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  private void evaluate() {
+    if (stopped) {
+      return;
+    }
+    try {
+      /* Run gates */
+      GATE_ACTION finalAction = worker.runGates();
+
+      /* Run queries and continue even if it fails */
+      try {
+        worker.runQueries();
+      } catch (Exception e) {
+        console.logWarn("Recording failure to execute Anchore queries and moving on with plugin operation", e);
+      }
+
+      /* Setup reports */
+      worker.setupBuildReports();
+
+      /* Evaluate result of step based on gate action */
+      if (null != finalAction) {
+        if (config.getBailOnFail() && (GATE_ACTION.STOP.equals(finalAction) || GATE_ACTION.FAIL.equals(finalAction))) {
+          console.logWarn("Failing Anchore Container Image Scanner Plugin step due to final result " + finalAction);
+          complete(new AbortException("Failing Anchore Container Image Scanner Plugin step due to final result " + finalAction), null);
+          return;
+        }
+        console.logInfo("Marking Anchore Container Image Scanner step as successful, final result " + finalAction);
+      } else {
+        console.logInfo("Marking Anchore Container Image Scanner step as successful, no final result");
+      }
+      // Return the final action to the pipeline script, e.g. def result = anchore name: 'anchore_images'
+      complete(null, null != finalAction ? finalAction.toString() : null);
+    } catch (Exception e) {
+      handleFailure(e);
+    }
+  }
+
+  private void handleFailure(Exception e) {
+    if (stopped) {
+      return;
+    }
+    if (null == console) {
+      complete(e, null);
+    } else if ((null != config && config.getBailOnPluginFail()) || step.getBuilder().getBailOnPluginFail()) {
+      console.logError("Failing Anchore Container Image Scanner Plugin step due to errors in plugin execution", e);
+      complete(e instanceof AbortException ? e
+          : new AbortException("Failing Anchore Container Image Scanner Plugin step due to errors in plugin execution"), null);
+    } else {
+      console.logWarn("Marking Anchore Container Image Scanner step as successful despite errors in plugin execution");
+      complete(null, null);
+    }
+  }
+
+  private synchronized void complete(Exception failure, String finalAction) {
+    if (completed) {
+      return;
+    }
+    completed = true;
+    cleanup();
+    if (null != console) {
+      console.logInfo("Completed Anchore Container Image Scanner step");
+    }
+    if (null != failure) {
+      getContext().onFailure(failure);
+    } else {
+      getContext().onSuccess(finalAction);
+    }
+  }
+
+  private void cleanup() {
+    // Wrap cleanup in try catch block to ensure it does not throw an exception
+    if (null != worker) {
+      try {
+        worker.cleanup();
+      } catch (Exception e) {
+        LOG.log(Level.FINE, "Failed to cleanup after the plugin, ignoring the errors", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,419 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Trend of the Anchore results of a job, read from an append-only index in the job directory rather than from the build records. The
+ * index holds one line per completed build with an Anchore report: build number, start time, the go, warn and stop action counts,
+ * then the vulnerability counts and the image counts of the build as colon separated groups ("-" if the build did not record them).
+ * Lines are only ever appended, a deleted build is recorded with a tombstone line and the last line of a build number wins. The number
+ * of the latest build with an Anchore result is kept per job alongside, see {@link #lastBuildNumber(Job)}.
+ *
+ * <p>The index is appended to when a build completes or is deleted, see {@link Listener}. Once superseded lines, tombstones and
+ * builds beyond the trend history make up as many lines as the history itself, the index is rewritten with just the records of the
+ * history. Jobs with builds recorded before the index existed are backfilled once from the build records, limited to the trend
+ * history. Parsed indexes are cached per job and reread only when the file changes, they are dropped when a job is deleted or moved,
+ * see {@link JobListener}. Updates are serialized per job.</p>
+ *
+ * <p>The trend history is tunable with the <code>com.anchore.jenkins.plugins.anchore.AnchoreAction.anchore.trend.max</code> system
+ * property (default 100 builds).</p>
+ */
+public final class AnchoreTrendIndex {
+
+  private static final Logger LOG = Logger.getLogger(AnchoreTrendIndex.class.getName());
+
+  static final String FILE_NAME = "anchore-trend.csv";
+  static final int MAX_HISTORY = Integer.getInteger(AnchoreAction.class.getName() + ".anchore.trend.max", 100);
+
+  private static final String DELETED = "deleted";
+  private static final Map<File, AnchoreTrendIndex> CACHE = new ConcurrentHashMap<>();
+  private static final Map<File, Object> LOCKS = new ConcurrentHashMap<>();
+  private static final Map<File, Integer> LAST_BUILDS = new ConcurrentHashMap<>();
+
+  private final long length;
+  private final long lastModified;
+  private final List<Record> records;
+  private final int lineCount;
+
+  private AnchoreTrendIndex(long length, long lastModified, List<Record> records, int lineCount) {
+    this.length = length;
+    this.lastModified = lastModified;
+    this.records = records;
+    this.lineCount = lineCount;
+  }
+
+  /**
+   * @return results of the builds in the index, most recent build first
+   */
+  public List<Record> getRecords() {
+    return records;
+  }
+
+  /**
+   * @return time the index last changed, in milliseconds since the epoch
+   */
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  /**
+   * Reads the trend of a job, backfilling the index from the build records if the job has none yet
+   *
+   * @param job job
+   * @return trend of the job, empty if the index cannot be read
+   */
+  public static AnchoreTrendIndex read(Job<?, ?> job) {
+    File file = new File(job.getRootDir(), FILE_NAME);
+    try {
+      if (!file.exists()) {
+        synchronized (lock(file)) {
+          if (!file.exists()) {
+            backfill(job, file, -1);
+          }
+        }
+      }
+
+      AnchoreTrendIndex cached = CACHE.get(file);
+      if (null != cached && cached.length == file.length() && cached.lastModified == file.lastModified()) {
+        return cached;
+      }
+      AnchoreTrendIndex index = parse(file);
+      CACHE.put(file, index);
+      return index;
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Failed to read Anchore trend index " + file, e);
+      return new AnchoreTrendIndex(0, 0, Collections.emptyList(), 0);
+    }
+  }
+
+  /**
+   * @param job job
+   * @return number of the latest completed build of the job with an Anchore result, 0 if there is none. Read from the index the first
+   * time, then kept up to date as builds complete and are deleted
+   */
+  static int lastBuildNumber(Job<?, ?> job) {
+    File file = new File(job.getRootDir(), FILE_NAME);
+    Integer number = LAST_BUILDS.get(file);
+    if (null == number) {
+      synchronized (lock(file)) {
+        List<Record> records = read(job).getRecords();
+        number = records.isEmpty() ? 0 : records.get(0).getNumber();
+        LAST_BUILDS.put(file, number);
+      }
+    }
+    return number;
+  }
+
+  /**
+   * @return object serializing the updates of an index
+   */
+  private static Object lock(File file) {
+    return LOCKS.computeIfAbsent(file, f -> new Object());
+  }
+
+  /**
+   * Appends the result of a completed build to the index of its job
+   *
+   * @param run completed build
+   * @param action Anchore result of the build
+   */
+  static void record(Run<?, ?> run, AnchoreAction action) {
+    File file = new File(run.getParent().getRootDir(), FILE_NAME);
+    synchronized (lock(file)) {
+      append(run, line(run, action));
+      LAST_BUILDS.computeIfPresent(file, (f, number) -> Math.max(number, run.getNumber()));
+    }
+  }
+
+  /**
+   * @return line of a build: number, start time, go, warn and stop action counts, vulnerability counts and image counts
+   */
+  private static String line(Run<?, ?> run, AnchoreAction action) {
+    return run.getNumber() + "," + run.getTimeInMillis() + "," + action.getGoActionCount() + "," + action.getWarnActionCount() + ","
+        + action.getStopActionCount() + "," + group(action.getVulnerabilityCounts()) + "," + group(action.getImageActionCounts());
+  }
+
+  /**
+   * @return line of a record, see {@link #line(Run, AnchoreAction)}
+   */
+  private static String line(Record record) {
+    return record.number + "," + record.timestamp + "," + record.goActionCount + "," + record.warnActionCount + ","
+        + record.stopActionCount + "," + group(record.vulnerabilityCounts) + "," + group(record.imageActionCounts);
+  }
+
+  private static String group(int[] counts) {
+    if (null == counts) {
+      return "-";
+    }
+    StringBuilder group = new StringBuilder();
+    for (int count : counts) {
+      if (group.length() > 0) {
+        group.append(':');
+      }
+      group.append(count);
+    }
+    return group.toString();
+  }
+
+  private static int[] parseGroup(String group, int length) {
+    String[] counts = group.split(":");
+    if (counts.length != length) {
+      return null;
+    }
+    int[] result = new int[length];
+    for (int i = 0; i < length; i++) {
+      result[i] = Integer.parseInt(counts[i]);
+    }
+    return result;
+  }
+
+  /**
+   * Appends a tombstone for a deleted build to the index of its job
+   *
+   * @param run deleted build
+   */
+  static void recordDeletion(Run<?, ?> run) {
+    File file = new File(run.getParent().getRootDir(), FILE_NAME);
+    synchronized (lock(file)) {
+      append(run, run.getNumber() + "," + DELETED);
+      // looked up in the index again the next time it is needed
+      LAST_BUILDS.computeIfPresent(file, (f, number) -> number == run.getNumber() ? null : number);
+    }
+  }
+
+  private static void append(Run<?, ?> run, String line) {
+    File file = new File(run.getParent().getRootDir(), FILE_NAME);
+    synchronized (lock(file)) {
+      try {
+        if (!file.exists()) {
+          backfill(run.getParent(), file, run.getNumber());
+        }
+        try (OutputStream out = new FileOutputStream(file, true)) {
+          out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        AnchoreTrendIndex index = parse(file);
+        if (index.lineCount > 2 * MAX_HISTORY) {
+          compact(file, index.records);
+        } else {
+          CACHE.put(file, index);
+        }
+      } catch (IOException e) {
+        LOG.log(Level.WARNING, "Failed to update Anchore trend index " + file, e);
+      }
+    }
+  }
+
+  /**
+   * Rewrites the index with just the given records, oldest build first
+   */
+  private static void compact(File file, List<Record> records) throws IOException {
+    List<String> lines = new ArrayList<>();
+    for (int i = records.size() - 1; i >= 0; i--) {
+      lines.add(line(records.get(i)));
+    }
+    File tmp = new File(file.getParentFile(), FILE_NAME + ".tmp");
+    Files.write(tmp.toPath(), lines, StandardCharsets.UTF_8);
+    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    LOG.log(Level.FINE, "Compacted Anchore trend index {0} to {1} build(s)", new Object[] {file, lines.size()});
+  }
+
+  /**
+   * Creates the index of a job from its build records, the way the trend graph used to walk them
+   *
+   * @param exclude number of a build to leave out, it is appended by the caller. -1 to include all builds
+   */
+  private static void backfill(Job<?, ?> job, File file, int exclude) throws IOException {
+    List<String> lines = new ArrayList<>();
+    AnchoreAction last = null;
+    for (Run<?, ?> b = job.getLastBuild(); null != b && null == last; b = b.getPreviousBuild()) {
+      AnchoreAction a = b.getAction(AnchoreAction.class);
+      if (null != a && !b.isBuilding()) {
+        last = a;
+      }
+    }
+    int count = 0;
+    for (AnchoreAction a = last; null != a && count < MAX_HISTORY; a = a.getPreviousResult(), count++) {
+      Run<?, ?> b = a.getBuild();
+      if (b.getNumber() != exclude) {
+        lines.add(line(b, a));
+      }
+    }
+    Collections.reverse(lines);
+
+    File tmp = new File(file.getParentFile(), FILE_NAME + ".tmp");
+    Files.write(tmp.toPath(), lines, StandardCharsets.UTF_8);
+    Files.move(tmp.toPath(), file.toPath());
+    LOG.log(Level.FINE, "Backfilled Anchore trend index of {0} with {1} build(s)", new Object[] {job.getFullName(), lines.size()});
+  }
+
+  /**
+   * Reads the records of the trend history. The last line of a build wins, so lines are parsed from the end of the index and only
+   * until the history is complete
+   */
+  private static AnchoreTrendIndex parse(File file) throws IOException {
+    long length = file.length(), lastModified = file.lastModified();
+    List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    TreeMap<Integer, Record> records = new TreeMap<>(Collections.reverseOrder());
+    Set<Integer> seen = new HashSet<>();
+    for (int i = lines.size() - 1; i >= 0 && records.size() < MAX_HISTORY; i--) {
+      String[] fields = lines.get(i).split(",");
+      try {
+        int number = Integer.parseInt(fields[0]);
+        if (seen.contains(number)) {
+          continue;
+        }
+        if (fields.length >= 5) {
+          // Lines written before the vulnerability and image counts were kept end after the action counts
+          int[] vulnerabilityCounts =
+              fields.length > 5 ? parseGroup(fields[5], VulnerabilityListingParser.SEVERITIES.length + 1) : null;
+          int[] imageActionCounts = fields.length > 6 ? parseGroup(fields[6], 3) : null;
+          records.put(number, new Record(number, Long.parseLong(fields[1]), Integer.parseInt(fields[2]), Integer.parseInt(fields[3]),
+              Integer.parseInt(fields[4]), vulnerabilityCounts, imageActionCounts));
+        } else if (fields.length != 2 || !DELETED.equals(fields[1])) {
+          continue;
+        }
+        seen.add(number);
+      } catch (NumberFormatException e) {
+        // partially written line, skip it
+      }
+    }
+    return new AnchoreTrendIndex(length, lastModified, Collections.unmodifiableList(new ArrayList<>(records.values())), lines.size());
+  }
+
+  /**
+   * Drops the cached indexes of jobs that no longer exist where they were
+   *
+   * @param dir directory of a deleted item, its jobs are dropped as well. Null if none
+   */
+  private static void evict(File dir) {
+    for (Map<File, ?> map : Arrays.asList(CACHE, LOCKS, LAST_BUILDS)) {
+      map.keySet().removeIf(file -> !file.exists() || (null != dir && file.toPath().startsWith(dir.toPath())));
+    }
+  }
+
+  /**
+   * Anchore result of a single build
+   */
+  public static final class Record {
+
+    private final int number;
+    private final long timestamp;
+    private final int goActionCount;
+    private final int warnActionCount;
+    private final int stopActionCount;
+    private final int[] vulnerabilityCounts;
+    private final int[] imageActionCounts;
+
+    Record(int number, long timestamp, int goActionCount, int warnActionCount, int stopActionCount, int[] vulnerabilityCounts,
+        int[] imageActionCounts) {
+      this.number = number;
+      this.timestamp = timestamp;
+      this.goActionCount = goActionCount;
+      this.warnActionCount = warnActionCount;
+      this.stopActionCount = stopActionCount;
+      this.vulnerabilityCounts = vulnerabilityCounts;
+      this.imageActionCounts = imageActionCounts;
+    }
+
+    public int getNumber() {
+      return number;
+    }
+
+    /**
+     * @return start time of the build, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+      return timestamp;
+    }
+
+    public int getGoActionCount() {
+      return goActionCount;
+    }
+
+    public int getWarnActionCount() {
+      return warnActionCount;
+    }
+
+    public int getStopActionCount() {
+      return stopActionCount;
+    }
+
+    /**
+     * @return see {@link AnchoreAction#getVulnerabilityCounts()}, null if the build did not record them
+     */
+    public int[] getVulnerabilityCounts() {
+      return null != vulnerabilityCounts ? vulnerabilityCounts.clone() : null;
+    }
+
+    /**
+     * @return see {@link AnchoreAction#getImageActionCounts()}, null if the build did not record them
+     */
+    public int[] getImageActionCounts() {
+      return null != imageActionCounts ? imageActionCounts.clone() : null;
+    }
+  }
+
+  /**
+   * Drops cached indexes when jobs are deleted or moved, their directory goes away or changes
+   */
+  @Extension
+  public static final class JobListener extends ItemListener {
+
+    @Override
+    public void onDeleted(Item item) {
+      evict(item.getRootDir());
+    }
+
+    @Override
+    public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+      evict(null);
+    }
+  }
+
+  /**
+   * Keeps the trend index of a job up to date as builds complete and are deleted
+   */
+  @Extension
+  public static final class Listener extends RunListener<Run<?, ?>> {
+
+    @Override
+    public void onCompleted(Run<?, ?> run, TaskListener listener) {
+      AnchoreAction action = run.getAction(AnchoreAction.class);
+      if (null != action) {
+        record(run, action);
+      }
+    }
+
+    @Override
+    public void onDeleted(Run<?, ?> run) {
+      if (null != run.getAction(AnchoreAction.class)) {
+        recordDeletion(run);
+      }
+    }
+  }
+}
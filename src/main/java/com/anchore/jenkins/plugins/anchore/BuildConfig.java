@@ -2,6 +2,7 @@ package com.anchore.jenkins.plugins.anchore;
 
 
 import com.anchore.jenkins.plugins.anchore.Util.API_VERSION;
+import com.anchore.jenkins.plugins.anchore.Util.POLL_STRATEGY;
 import java.util.List;
 
 /**
@@ -14,6 +15,10 @@ public class BuildConfig {
   private String name;
   private String engineRetries;
   private String engineRetryInterval;
+  private String engineConcurrency;
+  private POLL_STRATEGY pollStrategy;
+  private String pollTimeout;
+  private String pollMaxInterval;
   private boolean bailOnFail;
   private boolean bailOnPluginFail;
   private String policyBundleId;
@@ -21,6 +26,10 @@ public class BuildConfig {
   private boolean autoSubscribeTagUpdates;
   private boolean forceAnalyze;
   private boolean excludeFromBaseImage;
+  private boolean cacheResults;
+  private boolean archiveReportsDirectly;
+  private boolean compressReports;
+  private boolean compactReports;
 
   // Global configuration
   private boolean debug;
@@ -32,12 +41,18 @@ public class BuildConfig {
   private boolean engineverify;
   private API_VERSION engineApiVersion;
 
-  public BuildConfig(String name, String engineRetries, String engineRetryInterval, boolean bailOnFail, boolean bailOnPluginFail,
+  public BuildConfig(String name, String engineRetries, String engineRetryInterval, String engineConcurrency, POLL_STRATEGY pollStrategy,
+      String pollTimeout, String pollMaxInterval, boolean bailOnFail, boolean bailOnPluginFail,
       String policyBundleId, List<Annotation> annotations, boolean autoSubscribeTagUpdates, boolean forceAnalyze, boolean excludeFromBaseImage,
-      boolean debug, String anchoreui, String engineurl, String engineuser, String enginepass, String engineaccount, boolean engineverify) {
+      boolean cacheResults, boolean archiveReportsDirectly, boolean compressReports, boolean compactReports, boolean debug, String anchoreui,
+      String engineurl, String engineuser, String enginepass, String engineaccount, boolean engineverify) {
     this.name = name;
     this.engineRetries = engineRetries;
     this.engineRetryInterval = engineRetryInterval;
+    this.engineConcurrency = engineConcurrency;
+    this.pollStrategy = pollStrategy;
+    this.pollTimeout = pollTimeout;
+    this.pollMaxInterval = pollMaxInterval;
     this.bailOnFail = bailOnFail;
     this.bailOnPluginFail = bailOnPluginFail;
     this.policyBundleId = policyBundleId;
@@ -45,6 +60,10 @@ public class BuildConfig {
     this.autoSubscribeTagUpdates = autoSubscribeTagUpdates;
     this.forceAnalyze = forceAnalyze;
     this.excludeFromBaseImage = excludeFromBaseImage;
+    this.cacheResults = cacheResults;
+    this.archiveReportsDirectly = archiveReportsDirectly;
+    this.compressReports = compressReports;
+    this.compactReports = compactReports;
     this.debug = debug;
     this.anchoreui = anchoreui;
     this.engineurl = engineurl;
@@ -67,6 +86,22 @@ public class BuildConfig {
     return engineRetryInterval;
   }
 
+  public String getEngineConcurrency() {
+    return engineConcurrency;
+  }
+
+  public POLL_STRATEGY getPollStrategy() {
+    return pollStrategy;
+  }
+
+  public String getPollTimeout() {
+    return pollTimeout;
+  }
+
+  public String getPollMaxInterval() {
+    return pollMaxInterval;
+  }
+
   public boolean getBailOnFail() {
     return bailOnFail;
   }
@@ -95,6 +130,22 @@ public class BuildConfig {
     return excludeFromBaseImage;
   }
 
+  public boolean getCacheResults() {
+    return cacheResults;
+  }
+
+  public boolean getArchiveReportsDirectly() {
+    return archiveReportsDirectly;
+  }
+
+  public boolean getCompressReports() {
+    return compressReports;
+  }
+
+  public boolean getCompactReports() {
+    return compactReports;
+  }
+
   public boolean getDebug() {
     return debug;
   }
@@ -141,6 +192,12 @@ public class BuildConfig {
     consoleLog.logInfo("[build] name: " + name);
     consoleLog.logInfo("[build] engineRetries: " + engineRetries);
     consoleLog.logInfo("[build] engineRetryInterval: " + engineRetryInterval);
+    consoleLog.logInfo("[build] engineConcurrency: " + engineConcurrency);
+    consoleLog.logInfo("[build] pollStrategy: " + pollStrategy);
+    consoleLog.logInfo("[build] pollTimeout: " + pollTimeout);
+    if (pollStrategy == POLL_STRATEGY.adaptive) {
+      consoleLog.logInfo("[build] pollMaxInterval: " + pollMaxInterval);
+    }
     consoleLog.logInfo("[build] policyBundleId: " + policyBundleId);
     if (null != annotations && !annotations.isEmpty()) {
       for (Annotation a : annotations) {
@@ -149,5 +206,9 @@ public class BuildConfig {
     }
     consoleLog.logInfo("[build] bailOnFail: " + bailOnFail);
     consoleLog.logInfo("[build] bailOnPluginFail: " + bailOnPluginFail);
+    consoleLog.logInfo("[build] cacheResults: " + cacheResults);
+    consoleLog.logInfo("[build] archiveReportsDirectly: " + archiveReportsDirectly);
+    consoleLog.logInfo("[build] compressReports: " + compressReports);
+    consoleLog.logInfo("[build] compactReports: " + compactReports);
   }
 }
@@ -12,42 +12,59 @@ import hudson.PluginWrapper;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.tasks.ArtifactArchiver;
-import java.io.BufferedReader;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 import jenkins.model.Jenkins;
+import jenkins.util.BuildListenerAdapter;
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 import net.sf.json.JSONSerializer;
 
 import org.apache.commons.codec.binary.Base64;
-import org.apache.http.Header;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.protocol.HttpClientContext;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
-import org.apache.http.conn.ssl.SSLContextBuilder;
-import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.message.BasicHeader;
 import org.apache.http.util.EntityUtils;
 
 /**
@@ -62,9 +79,16 @@ public class BuildWorker {
 
   // TODO refactor
   private static final String GATES_OUTPUT_PREFIX = "anchore_gates";
+  private static final String GATES_TABLE_ROWS_PREFIX = "anchore_gates_rows";
+  private static final String GATES_TABLE_INDEX_PREFIX = "anchore_gates_index";
   private static final String CVE_LISTING_PREFIX = "anchore_security";
+  private static final String CVE_TABLE_ROWS_PREFIX = "anchore_security_rows";
+  private static final String CVE_TABLE_INDEX_PREFIX = "anchore_security_index";
+  private static final List<String> CVE_LISTING_COLUMNS = Collections.unmodifiableList(
+      Arrays.asList("Tag", "CVE ID", "Severity", "Vulnerability Package", "Fix Available", "Inherited From Base", "URL"));
   private static final String JENKINS_DIR_NAME= "AnchoreReport";
   private static final String JSON_FILE_EXTENSION = ".json";
+  private static final String GZIP_FILE_EXTENSION = ".gz";
   private static final String AE_VULNS_PREFIX = "anchoreengine-api-response-vulnerabilities-";
   private static final String AE_EVAL_PREFIX = "anchoreengine-api-response-evaluation-";
 
@@ -83,16 +107,23 @@ public class BuildWorker {
   // Initialized by Jenkins workspace prep
   private String buildId;
   private String jenkinsOutputDirName;
+  private FilePath reportDir; // jenkinsOutputDirName in the workspace, or in stagingDir when archiving directly
+  private FilePath stagingDir; // Directory on the controller where reports are staged when archiving directly
   private Map<String, String> queryOutputMap; // TODO rename
+  private Map<String, String> imageList; // Read by checkConfig(): image tag/digest to Base64 encoded Dockerfile contents
   private Map<String, String> input_image_dfile = new LinkedHashMap<>();
   private Map<String, String> input_image_imageDigest = new LinkedHashMap<>();
   private String gateOutputFileName;
+  private String gateTableFileName;
   private GATE_ACTION finalAction;
   private JSONObject gateSummary;
-  private int totalStopActionCount = 0;
-  private int totalWarnActionCount = 0;
-  private int totalGoActionCount = 0;
+  private final ActionCounts totalActionCounts = new ActionCounts();
+  private final ActionCounts imageActionCounts = new ActionCounts();
+  private VulnerabilityCounts vulnerabilityCounts;
   private String cveListingFileName;
+  private String cveTableFileName;
+  private final Map<String, CompletableFuture<VulnerabilityListing>> vulnerabilityListings = new ConcurrentHashMap<>();
+  private ExecutorService requestExecutor;
 
   public BuildWorker(Run<?, ?> build, FilePath workspace, Launcher launcher, TaskListener listener, BuildConfig config)
       throws AbortException {
@@ -175,157 +206,292 @@ public class BuildWorker {
     runAnalyzerEngine();
   }
 
-  private static CloseableHttpClient makeHttpClient(boolean verify, String account) {
-    CloseableHttpClient httpclient = null;
-    List<Header> headers = new ArrayList<>();
-    if (!Strings.isNullOrEmpty(account)) {
-      Header header = new BasicHeader("x-anchore-account", account);
-      headers.add(header);
-    }
+  private void runAnalyzerEngine() throws AbortException {
+    CloseableHttpClient httpclient = EngineClientRegistry.get(config.getEngineurl(), config.getEngineaccount(), config.getEngineverify());
 
-    if (verify) {
-      httpclient = HttpClients.custom().setDefaultHeaders(headers).build();
-    } else {
-      //SSLContextBuilder builder;
+    try {
+      // Submit images concurrently (bounded by engineConcurrency), results are collected in the order of the image list file
+      List<String> tags = new ArrayList<>(input_image_dfile.keySet());
+      List<Callable<String>> tasks = new ArrayList<>();
+      for (Map.Entry<String, String> entry : input_image_dfile.entrySet()) {
+        tasks.add(() -> submitImage(httpclient, entry.getKey(), entry.getValue()));
+      }
+      List<Future<String>> results = runConcurrently(tasks);
 
-      //SSLConnectionSocketFactory sslsf=null;
+      List<String> failedTags = new ArrayList<>();
+      for (int i = 0; i < tags.size(); i++) {
+        String tag = tags.get(i);
+        try {
+          input_image_imageDigest.put(tag, results.get(i).get());
+        } catch (ExecutionException e) {
+          failedTags.add(tag);
+          if (e.getCause() instanceof AbortException) {
+            console.logError(e.getCause().getMessage());
+          } else {
+            console.logError("Failed to add " + tag + " to anchore-enterprise due to an unexpected error", e.getCause());
+          }
+        }
+      }
 
-      try {
-        SSLContextBuilder builder = new SSLContextBuilder();
-        builder.loadTrustMaterial(null, new TrustSelfSignedStrategy());
-        SSLConnectionSocketFactory sslsf = new SSLConnectionSocketFactory(builder.build(),
-            SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
-        httpclient = HttpClients.custom().setSSLSocketFactory(sslsf).setDefaultHeaders(headers).build();
-      } catch (Exception e) {
-        System.out.println(e);
+      if (!failedTags.isEmpty()) {
+        throw new AbortException("Failed to add " + failedTags.size() + " of " + tags.size() + " image(s) to anchore-enterprise: "
+            + Joiner.on(", ").join(failedTags) + ". Check above logs for errors from anchore-enterprise");
       }
+      analyzed = true;
+    } catch (AbortException e) { // probably caught one of the thrown exceptions, let it pass through
+      throw e;
+    } catch (Exception e) { // caught unknown exception, log it and wrap its
+      console.logError("Failed to add image(s) to anchore-enterprise due to an unexpected error", e);
+      throw new AbortException(
+          "Failed to add image(s) to anchore-enterprise due to an unexpected error. Please refer to above logs for more information");
     }
-    return (httpclient);
   }
 
-  private void runAnalyzerEngine() throws AbortException {
-    String imageDigest = null;
-    String username = config.getEngineuser();
-    String password = config.getEnginepass();
-    String account = config.getEngineaccount();
-    boolean sslverify = config.getEngineverify();
+  /**
+   * Submits a single image to anchore-enterprise for analysis. Safe to invoke concurrently
+   *
+   * @return digest of the submitted image
+   */
+  private String submitImage(CloseableHttpClient httpclient, String tag, String dfile) throws Exception {
+    List<String> queryList = new ArrayList<>();
+    String queryStr = null;
 
-    CredentialsProvider credsProvider = new BasicCredentialsProvider();
-    credsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(username, password));
-    HttpClientContext context = HttpClientContext.create();
-    context.setCredentialsProvider(credsProvider);
+    console.logInfo("Submitting " + tag + " for analysis");
 
-    try {
-      for (Map.Entry<String, String> entry : input_image_dfile.entrySet()) {
-        String tag = entry.getKey();
-        String dfile = entry.getValue();
-        List<String> queryList = new ArrayList<>();
-        String queryStr = null;
+    // Prep POST request
+    String theurl = config.getEngineurl().replaceAll("/+$", "") + "/images";
 
-        console.logInfo("Submitting " + tag + " for analysis");
+    String should_auto_subscribe = config.getAutoSubscribeTagUpdates() ? "true" : "false";
+    queryList.add("auto_subscribe=" + should_auto_subscribe);
 
-        try (CloseableHttpClient httpclient = makeHttpClient(sslverify, account)) {
-          // Prep POST request
-          String theurl = config.getEngineurl().replaceAll("/+$", "") + "/images";
+    String should_force_image_add = config.getForceAnalyze() ? "true" : "false";
+    queryList.add("force=" + should_force_image_add);
 
+    if (!queryList.isEmpty()){
+      queryStr = Joiner.on('&').skipNulls().join(queryList);
+    }
 
-          String should_auto_subscribe = config.getAutoSubscribeTagUpdates() ? "true" : "false";
-          queryList.add("auto_subscribe=" + should_auto_subscribe);
+    if (!Strings.isNullOrEmpty(queryStr)) {
+      theurl += "?" + queryStr;
+    }
+    console.logDebug("Adding image using Enterprise API " + config.getEngineApiVersion());
+    JSONObject jsonBody = new JSONObject();
 
-          String should_force_image_add = config.getForceAnalyze() ? "true" : "false";
-          queryList.add("force=" + should_force_image_add);
+    // Prep request body
+    if (config.getEngineApiVersion() == API_VERSION.v1) {
+      throw new AbortException("Requires Anchore Enterprise v2 API that can be found in Anchore Enterprise >= 4.9");
+    } else {
+      JSONObject jTag = new JSONObject();
 
-          if (!queryList.isEmpty()){
-            queryStr = Joiner.on('&').skipNulls().join(queryList);
-          }
+      jTag.put("pull_string", tag);
+      if (null != dfile) {
+        jTag.put("dockerfile", dfile);
+      }
 
-          if (!Strings.isNullOrEmpty(queryStr)) {
-            theurl += "?" + queryStr;
-          }
-          console.logDebug("Adding image using Enterprise API " + config.getEngineApiVersion());
-          JSONObject jsonBody = new JSONObject();
+      if (null != config.getAnnotations() && !config.getAnnotations().isEmpty()) {
+        JSONObject annotations = new JSONObject();
+        for (Annotation a : config.getAnnotations()) {
+          annotations.put(a.getKey(), a.getValue());
+        }
+        jsonBody.put("annotations", annotations);
+      }
 
-          // Prep request body
-          if (config.getEngineApiVersion() == API_VERSION.v1) {
-            throw new AbortException("Requires Anchore Enterprise v2 API that can be found in Anchore Enterprise >= 4.9");
-          } else {
-            JSONObject jTag = new JSONObject();
+      JSONObject tagSource = new JSONObject();
 
-            jTag.put("pull_string", tag);
-            if (null != dfile) {
-              jTag.put("dockerfile", dfile);
-            }
-        
-            if (null != config.getAnnotations() && !config.getAnnotations().isEmpty()) {
-              JSONObject annotations = new JSONObject();
-              for (Annotation a : config.getAnnotations()) {
-                annotations.put(a.getKey(), a.getValue());
-              }
-              jsonBody.put("annotations", annotations);
-            }
+      tagSource.put("tag", jTag);
 
-            JSONObject tagSource = new JSONObject();
+      jsonBody.put("source", tagSource);
+    }
 
-            tagSource.put("tag", jTag);
+    String body = jsonBody.toString();
 
-            jsonBody.put("source", tagSource);
-          }
+    HttpPost httppost = new HttpPost(theurl);
+    httppost.addHeader("Content-Type", "application/json");
+    httppost.setEntity(new StringEntity(body));
 
-          String body = jsonBody.toString();
-
-          HttpPost httppost = new HttpPost(theurl);
-          httppost.addHeader("Content-Type", "application/json");
-          httppost.setEntity(new StringEntity(body));
-
-          console.logDebug("anchore-enterprise add image URL: " + theurl);
-          console.logDebug("anchore-enterprise add image payload: " + body);
-
-          try (CloseableHttpResponse response = httpclient.execute(httppost, context)) {
-            int statusCode = response.getStatusLine().getStatusCode();
-            if (statusCode != 200) {
-              String serverMessage = EntityUtils.toString(response.getEntity());
-              console.logError(
-                  "anchore-enterprise add image failed. URL: " + theurl + ", status: " + response.getStatusLine() + ", error: "
-                      + serverMessage);
-              throw new AbortException("Failed to analyze " + tag
-                  + " due to error adding image to anchore-enterprise. Check above logs for errors from anchore-enterprise");
-            } else {
-              // Read the response body.
-              String responseBody = EntityUtils.toString(response.getEntity());
-              // TODO EntityUtils.consume(entity2);
-
-              JSONObject respJson = JSONObject.fromObject(responseBody);
-              imageDigest = JSONObject.fromObject(respJson).getString("image_digest");
-
-              console.logInfo("Analysis request accepted, received image digest " + imageDigest);
-              input_image_imageDigest.put(tag, imageDigest);
-            }
-          } catch (Throwable e) {
-            throw e;
-          }
-        } catch (Throwable e) {
-          throw e;
+    console.logDebug("anchore-enterprise add image URL: " + theurl);
+    console.logDebug("anchore-enterprise add image payload: " + body);
+
+    try (CloseableHttpResponse response = httpclient.execute(httppost, makeHttpContext())) {
+      int statusCode = response.getStatusLine().getStatusCode();
+      if (statusCode != 200) {
+        String serverMessage = EntityUtils.toString(response.getEntity());
+        console.logError(
+            "anchore-enterprise add image failed. URL: " + theurl + ", status: " + response.getStatusLine() + ", error: "
+                + serverMessage);
+        throw new AbortException("Failed to analyze " + tag
+            + " due to error adding image to anchore-enterprise. Check above logs for errors from anchore-enterprise");
+      } else {
+        // Read the response body.
+        String responseBody = EntityUtils.toString(response.getEntity());
+        String imageDigest = JSONObject.fromObject(responseBody).getString("image_digest");
+
+        console.logInfo("Analysis request accepted for " + tag + ", received image digest " + imageDigest);
+        if (config.getForceAnalyze()) {
+          // Results of the prior analysis are stale
+          EngineResponseCache.invalidate(config.getEngineurl(), imageDigest);
         }
+        return imageDigest;
+      }
+    }
+  }
+
+  /**
+   * Creates a new http context carrying the anchore-enterprise credentials. Contexts hold per-execution state and must not be shared
+   * between threads, get a new one for each concurrent task
+   */
+  private HttpClientContext makeHttpContext() {
+    return EngineClientRegistry.newContext(config.getEngineuser(), config.getEnginepass());
+  }
+
+  /**
+   * Issues a GET request to anchore-enterprise, sharing identical requests in flight and, if the job opted in, reusing recent results
+   * (never when analysis is forced)
+   */
+  private EngineResponse fetch(CloseableHttpClient httpclient, HttpClientContext context, EngineRequestCoalescer.Key key, String url)
+      throws IOException, InterruptedException {
+    if (config.getCacheResults() && !config.getForceAnalyze()) {
+      return EngineResponseCache.get(httpclient, context, config, key, url);
+    }
+    return EngineRequestCoalescer.get(httpclient, context, key, url);
+  }
+
+  /**
+   * Runs the tasks using at most engineConcurrency threads and waits for all of them to finish. Futures are returned in the same order
+   * as the tasks. Tasks are executed one after the other on the calling thread if concurrency is not enabled
+   */
+  private <T> List<Future<T>> runConcurrently(List<Callable<T>> tasks) throws InterruptedException {
+    try {
+      return execute(tasks, false);
+    } catch (ExecutionException e) { // not thrown unless failing fast
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Same as {@link #runConcurrently(List)} but gives up as soon as any of the tasks fails. Pending tasks are cancelled and the failure
+   * of the task is rethrown
+   *
+   * @return results of the tasks in the same order as the tasks
+   */
+  private <T> List<T> runConcurrentlyFailFast(List<Callable<T>> tasks) throws Exception {
+    List<T> results = new ArrayList<>();
+    try {
+      for (Future<T> future : execute(tasks, true)) {
+        results.add(future.get());
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
       }
-      analyzed = true;
-    } catch (AbortException e) { // probably caught one of the thrown exceptions, let it pass through
       throw e;
-    } catch (Exception e) { // caught unknown exception, log it and wrap its
-      console.logError("Failed to add image(s) to anchore-enterprise due to an unexpected error", e);
-      throw new AbortException(
-          "Failed to add image(s) to anchore-enterprise due to an unexpected error. Please refer to above logs for more information");
     }
+    return results;
+  }
+
+  private <T> List<Future<T>> execute(List<Callable<T>> tasks, boolean failFast) throws InterruptedException, ExecutionException {
+    int concurrency = Math.min(Integer.parseInt(config.getEngineConcurrency()), tasks.size());
+    List<Future<T>> futures = new ArrayList<>();
+    if (concurrency <= 1) {
+      for (Callable<T> task : tasks) {
+        FutureTask<T> future = new FutureTask<>(task);
+        future.run();
+        futures.add(future);
+        if (failFast) {
+          future.get();
+        }
+      }
+      return futures;
+    }
+
+    console.logDebug("Running " + tasks.size() + " task(s) with concurrency " + concurrency);
+    ExecutorService executor = Executors
+        .newFixedThreadPool(concurrency, new NamingThreadFactory(new DaemonThreadFactory(), "AnchoreWorker " + buildId));
+    try {
+      CompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+      for (Callable<T> task : tasks) {
+        futures.add(completionService.submit(task));
+      }
+      for (int i = 0; i < tasks.size(); i++) {
+        Future<T> completed = completionService.take();
+        if (failFast) {
+          completed.get();
+        }
+      }
+      return futures;
+    } finally {
+      // Interrupts tasks that are still running, either because one of them failed or the build was aborted
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * @return name of a report file, gzip compressed if the job opted in
+   */
+  private String reportFileName(String baseName) {
+    return baseName + JSON_FILE_EXTENSION + (config.getCompressReports() ? GZIP_FILE_EXTENSION : "");
+  }
+
+  /**
+   * @return name of a file of a report table. Never compressed, even if the job opted in, so that a page of the table can skip
+   * straight to its rows, see {@link ReportTable}
+   */
+  private static String tableFileName(String baseName) {
+    return baseName + JSON_FILE_EXTENSION;
   }
 
-  private void writeResponseToFile(Integer counter, FilePath jenkinsOutputDirFP, String responseBody) throws AbortException {
+  /**
+   * Opens a report file named with {@link #reportFileName(String)} for writing, compressing on the fly if the job opted in
+   */
+  private OutputStream writeReport(FilePath report) throws IOException, InterruptedException {
+    OutputStream out = report.write();
+    return config.getCompressReports() ? new GZIPOutputStream(out, 8192) : out;
+  }
+
+  /**
+   * Reads the policy evaluation of an image and writes the response to the reports, without the findings inherited from the base
+   * image if they are excluded
+   *
+   * @return evaluation result, or null if the response contains no evaluations
+   */
+  private ImageEvaluation readPolicyEvaluation(int counter, FilePath jenkinsOutputDirFP, String imageDigest, EngineResponse response)
+      throws IOException, InterruptedException {
+    if (!config.getExcludeFromBaseImage()) {
+      ImageEvaluation evaluation;
+      try (Reader in = new InputStreamReader(response.openBody(), StandardCharsets.UTF_8)) {
+        evaluation = PolicyEvaluationReader.read(in, null, imageDigest, false);
+      }
+      if (null != evaluation) {
+        writeResponseToFile(counter, jenkinsOutputDirFP, response);
+      }
+      return evaluation;
+    }
+
+    String jenkinsAEResponseFileName = reportFileName(AE_EVAL_PREFIX + counter);
+    FilePath jenkinsAEResponseFP = new FilePath(jenkinsOutputDirFP, jenkinsAEResponseFileName);
+    ImageEvaluation evaluation;
+    console.logDebug("Writing anchore-enterprise policy evaluation response to " + jenkinsAEResponseFP.getRemote());
+    try (Reader in = new InputStreamReader(response.openBody(), StandardCharsets.UTF_8);
+        BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(writeReport(jenkinsAEResponseFP), StandardCharsets.UTF_8))) {
+      evaluation = PolicyEvaluationReader.read(in, bw, imageDigest, true);
+    }
+    if (null == evaluation) {
+      jenkinsAEResponseFP.delete();
+    } else {
+      console.logDebug("Excluded " + evaluation.getExcludedCount() + " finding(s) inherited from the base image of " + imageDigest);
+    }
+    return evaluation;
+  }
+
+  private void writeResponseToFile(Integer counter, FilePath jenkinsOutputDirFP, EngineResponse response) throws AbortException {
     // Write api response to a file as it is
-    String jenkinsAEResponseFileName = AE_EVAL_PREFIX + (counter) + JSON_FILE_EXTENSION;
+    String jenkinsAEResponseFileName = reportFileName(AE_EVAL_PREFIX + counter);
     FilePath jenkinsAEResponseFP = new FilePath(jenkinsOutputDirFP, jenkinsAEResponseFileName);
 
     try {
       console.logDebug("Writing anchore-enterprise policy evaluation response to " + jenkinsAEResponseFP.getRemote());
-      try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(jenkinsAEResponseFP.write(), StandardCharsets.UTF_8))) {
-        bw.write(responseBody);
+      try (InputStream in = response.openBody(); OutputStream out = writeReport(jenkinsAEResponseFP)) {
+        IOUtils.copy(in, out);
       }
     } catch (IOException | InterruptedException e) {
       console.logWarn("Failed to write anchore-enterprise policy evaluation response to " + jenkinsAEResponseFP.getRemote(), e);
@@ -334,6 +500,24 @@ public class BuildWorker {
 
   }
 
+  /**
+   * @return tag to digest mapping of the images submitted for analysis, in the order of the image list file
+   */
+  public Map<String, String> getSubmittedImages() {
+    return new LinkedHashMap<>(input_image_imageDigest);
+  }
+
+  /**
+   * Restores the images submitted by a prior invocation of {@link #runAnalyzer()}, for instance after a Jenkins restart, so that
+   * policy evaluation can resume without resubmitting them
+   *
+   * @param submittedImages tag to digest mapping as returned by {@link #getSubmittedImages()}
+   */
+  public void resumeSubmittedImages(Map<String, String> submittedImages) {
+    input_image_imageDigest = new LinkedHashMap<>(submittedImages);
+    analyzed = true;
+  }
+
   public GATE_ACTION runGates() throws AbortException {
     if (config.getEngineApiVersion() == API_VERSION.v1) {
 	  throw new AbortException("Requires Anchore Enterprise v2 API that can be found in Anchore Enterprise >= 4.9");
@@ -343,285 +527,66 @@ public class BuildWorker {
   }
 
   private GATE_ACTION runGatesEngineV2() throws AbortException {
-    String username = config.getEngineuser();
-    String password = config.getEnginepass();
-    String account = config.getEngineaccount();
-    String anchoreui = config.getAnchoreui();
-    boolean sslverify = config.getEngineverify();
-
-    CredentialsProvider credsProvider = new BasicCredentialsProvider();
-    credsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(username, password));
-    HttpClientContext context = HttpClientContext.create();
-    context.setCredentialsProvider(credsProvider);
+    CloseableHttpClient httpclient = EngineClientRegistry.get(config.getEngineurl(), config.getEngineaccount(), config.getEngineverify());
 
-    //Credentials defaultcreds = new UsernamePasswordCredentials(username, password);
-    FilePath jenkinsOutputDirFP = new FilePath(workspace, jenkinsOutputDirName);
+    FilePath jenkinsOutputDirFP = reportDir;
     FilePath jenkinsGatesOutputFP = new FilePath(jenkinsOutputDirFP, gateOutputFileName);
-    int counter = 0;
 
     finalAction = GATE_ACTION.PASS;
     if (analyzed) {
       try {
-        JSONArray gate_results = new JSONArray();
-
-        for (Map.Entry<String, String> entry : input_image_imageDigest.entrySet()) {
-          String tag = entry.getKey();
-          String imageDigest = entry.getValue();
-
-          console.logInfo("Waiting for analysis of " + tag + ", polling status periodically");
-
-          Boolean anchore_eval_status = false;
-          String imageURL =
-              config.getEngineurl().replaceAll("/+$", "") + "/images/" + imageDigest;
-
-          int tryCount = 0;
-          int maxCount = Integer.parseInt(config.getEngineRetries());
-          int retryInterval = Integer.parseInt(config.getEngineRetryInterval());
-          Boolean done = false;
-          HttpGet httpgetCheckAnalysis = new HttpGet(imageURL);
-          httpgetCheckAnalysis.addHeader("Content-Type", "application/json");
-          int statusCode;
-          String serverMessage = null;
-          boolean sleep = false;
-          JSONArray evaluations = null;
-
-          do { // try this at least once regardless what the retry count is
-            if (sleep) {
-              console.logDebug("Snoozing before retrying anchore-enterprise get policy evaluation");
-              Thread.sleep(1000 * retryInterval);
-              sleep = false;
-            }
-
-            tryCount++;
-            try (CloseableHttpClient httpclient = makeHttpClient(sslverify, account)) {
-              console.logDebug("Attempting anchore-enterprise check for image analysis (" + tryCount + "/" + maxCount + ")");
-
-              try (CloseableHttpResponse responseCheckAnalysis = httpclient.execute(httpgetCheckAnalysis, context)) {
-                statusCode = responseCheckAnalysis.getStatusLine().getStatusCode();
-
-                if (statusCode != 200) {
-                  serverMessage = EntityUtils.toString(responseCheckAnalysis.getEntity());
-                  console.logDebug(
-                      "anchore-enterprise get analysis status failed. URL: " + imageURL + ", status: " + responseCheckAnalysis.getStatusLine()
-                          + ", error: " + serverMessage);
-                  sleep = true;
-                } else {
-                  // Look for analyzed image before proceeding
-                  String responseBodyCheckAnalysis = EntityUtils.toString(responseCheckAnalysis.getEntity());
-                  JSONObject imageResponse = (JSONObject) JSONSerializer.toJSON(responseBodyCheckAnalysis);
-                  String imageAnalysisStatus = imageResponse.getString("analysis_status");
-
-                  if (imageAnalysisStatus.equals("analysis_failed")) {
-                    console.logWarn("anchore-enterprise reporting analysis failed for " + imageDigest);
-                    throw new AbortException("Analysis failed for " + imageDigest);
-                  } else if (!imageAnalysisStatus.equals("analyzed")) {
-                    console.logDebug("anchore-enterprise get analysis status: " + imageAnalysisStatus);
-                    sleep = true;
-                  } else {
-                    String imageRegistry = imageResponse.getJSONArray("image_detail").getJSONObject(0).getString("registry");
-                    String imageRepo = imageResponse.getJSONArray("image_detail").getJSONObject(0).getString("repo");
-                    String imageTag = imageResponse.getJSONArray("image_detail").getJSONObject(0).getString("tag");
-
-                    // Get the list of ancestors to determine base image
-                    String ancestorsURL = imageURL + "/ancestors";
-                    HttpGet httpgetAncestors = new HttpGet(ancestorsURL);
-                    httpgetAncestors.addHeader("Content-Type", "application/json");
-                    
-                    try (CloseableHttpResponse responseAncestors = httpclient.execute(httpgetAncestors, context)) {
-                      statusCode = responseAncestors.getStatusLine().getStatusCode();
-                      if (statusCode != 200) {
-                        serverMessage = EntityUtils.toString(responseAncestors.getEntity());
-                        console.logDebug(
-                            "anchore-enterprise get ancestors failed. URL: " + ancestorsURL + ", status: " + responseAncestors.getStatusLine()
-                                + ", error: " + serverMessage);
-                        sleep = true;
-                      } else {
-                        // Get the base image from ancestors
-                        String responseBodyAncestors = EntityUtils.toString(responseAncestors.getEntity());
-
-                        String policyCheckURL = null;
-
-                        JSONArray ancestors = (JSONArray) JSONSerializer.toJSON(responseBodyAncestors);
-                        if (ancestors.size() < 1) {
-                          console.logDebug("anchore-enterprise get ancestors response contains no records for image: " + ancestorsURL);
-                          policyCheckURL =
-                              config.getEngineurl().replaceAll("/+$", "") + "/images/" + imageDigest + "/check?tag=" + tag
-                                  + "&detail=true";
-                        } else {
-                          String baseImageDigest = null;
-
-                          // Get the chosen_base image from API
-                          for (int i = 0; i < ancestors.size(); i++) {
-                            JSONObject ancestor = ancestors.getJSONObject(i);
-                            // If chosen_base_image key exists in the response, use it.
-                            // This is required for compatibility with < Anchore Enterprise 5.7
-                            if (ancestor.has("chosen_base_image")) {
-                              if (ancestor.getBoolean("chosen_base_image")) {
-                                console.logDebug("found base image from API");
-                                baseImageDigest = ancestor.getString("image_digest");
-                                break;
-                              }
-                            }
-                          }
-
-                          // Get the last ancestor to determine the base image if no chosen_base image from API
-                          // This is required for compatibility with < Anchore Enterprise 5.7
-                          if (baseImageDigest == null) {
-                            JSONObject lastAncestor = ancestors.getJSONObject(ancestors.size() - 1);
-                            baseImageDigest = lastAncestor.getString("image_digest");
-                          }
-
-                          policyCheckURL =
-                              config.getEngineurl().replaceAll("/+$", "") + "/images/" + imageDigest + "/check?tag=" + tag
-                                  + "&detail=true&base_digest=" + baseImageDigest;
-                        }
-
-                        if (!Strings.isNullOrEmpty(config.getPolicyBundleId())) {
-                          policyCheckURL += "&policy_id=" + config.getPolicyBundleId();
-                        }
-                        console.logDebug("anchore-enterprise get policy evaluation URL: " + policyCheckURL);
-
-                        HttpGet httpgetPolicyCheck = new HttpGet(policyCheckURL);
-                        httpgetPolicyCheck.addHeader("Content-Type", "application/json");
-
-                        try (CloseableHttpResponse responsePolicyCheck = httpclient.execute(httpgetPolicyCheck, context)) {
-                          statusCode = responsePolicyCheck.getStatusLine().getStatusCode();
-
-                          if (statusCode != 200) {
-                            serverMessage = EntityUtils.toString(responsePolicyCheck.getEntity());
-                            console.logDebug(
-                                "anchore-enterprise get policy evaluation failed. URL: " + policyCheckURL + ", status: " + statusCode
-                                    + ", error: " + serverMessage);
-                            sleep = true;
-                          } else {
-                            // Read the response body.
-                            String responseBodyPolicyCheck = EntityUtils.toString(responsePolicyCheck.getEntity());
-                            
-                            JSONObject topDocument = (JSONObject) JSONSerializer.toJSON(responseBodyPolicyCheck);
-                            evaluations = topDocument.getJSONArray("evaluations");                  
-                            JSONObject policyJsonObject = evaluations.getJSONObject(0);
-                            JSONObject evaluationDetails = policyJsonObject.getJSONObject("details");
-                            JSONArray evaluationFindings = evaluationDetails.getJSONArray("findings");
-                            String gate_resulting_action = policyJsonObject.getString("final_action");
-                            String gate_resulting_reason = policyJsonObject.getString("final_action_reason");
-                            String gate_result_details = "";
-
-                            if (evaluations.size() < 1) {
-                              // try again until we get an eval
-                              console
-                                  .logDebug("anchore-enterprise get policy evaluation response contains no evaluations records. May snooze and retry");
-                              sleep = true;
-                            } else {
-                              counter = counter + 1;
-
-                              if (gate_resulting_action.equals("stop")) {
-                                if (gate_resulting_reason.equals("policy_evaluation")) {
-                                  gate_result_details = "Policy evaluation failed";
-                                } else {
-                                  // Catch all for other stop actions
-                                  gate_result_details = "Failed due to " + gate_resulting_reason;
-                                }
-                              }
-  
-                              // remove records where inherited_from_base is true
-                              if (config.getExcludeFromBaseImage()) {
-                                for (Iterator<Object> it = evaluationFindings.iterator(); it.hasNext();) {
-                                  JSONObject finding = (JSONObject) it.next();
-                                  if (finding.getString("inherited_from_base").equals("true")) {
-                                    it.remove();
-                                  }
-                                }
-
-                                // Check for case where all findings are inherited from base image
-                                if ((evaluationFindings.size() == 0) && gate_resulting_action.equals("stop") && gate_resulting_reason.equals("policy_evaluation")) {
-                                    console.logInfo("No findings to evaluate after excluding inherited_from_base. Failure is in base image.");
-                                    gate_result_details = "Failure inherited from base image";
-                                }
-
-                                // convert back to a string of the whole response with the changes
-                                evaluationDetails.put("findings", evaluationFindings);
-                                policyJsonObject.put("details", evaluationDetails);
-                                evaluations.set(0, policyJsonObject);
-                                topDocument.put("evaluations", evaluations);
-                                responseBodyPolicyCheck = topDocument.toString();
-                              }
-
-                              writeResponseToFile(counter, jenkinsOutputDirFP, responseBodyPolicyCheck);
-
-                              JSONObject gate_result = new JSONObject();
-
-                              gate_result.put("image_digest", imageDigest);
-                              if (!Strings.isNullOrEmpty(anchoreui)) {
-                                String encodedImageRegistry = URLEncoder.encode(imageRegistry, StandardCharsets.UTF_8.toString());
-                                String encodedImageRepo = URLEncoder.encode(imageRepo, StandardCharsets.UTF_8.toString());
-                                if (!Strings.isNullOrEmpty(account)) {
-                                  gate_result.put("repo_tag", anchoreui.replaceAll("/+$", "")+"/"+account+"/artifacts/image/"+encodedImageRegistry+"/"+encodedImageRepo+"/"+imageTag+"/"+imageDigest+" "+topDocument.getString("evaluated_tag"));
-                                }
-                                else {
-                                  gate_result.put("repo_tag", anchoreui.replaceAll("/+$", "")+"/artifacts/image/"+encodedImageRegistry+"/"+encodedImageRepo+"/"+imageTag+"/"+imageDigest+" "+topDocument.getString("evaluated_tag"));
-                                }
-                              } else {
-                                gate_result.put("repo_tag", topDocument.getString("evaluated_tag"));
-                              }
-                              gate_result.put("final_action", gate_resulting_action);
-                              gate_result.put("failure_details", gate_result_details);
-                              gate_result.put("gate_results", evaluationFindings);
-
-                              gate_results.add(gate_result);
-                            
-                              console.logDebug("anchore-enterprise get policy evaluation result: " + gate_resulting_action.toString());
-
-                              // we actually got a real result
-                              // this is the only way this gets flipped to true
-                              anchore_eval_status = policyJsonObject.getString("status").equals("pass");
-                              console.logDebug("anchore-enterprise get policy evaluation status: " + anchore_eval_status);
-
-                              done = true;
-                              console.logInfo("Completed analysis and processed policy evaluation result");
-                            }
-                          }
-                        }
-                      }
-                    }
-                  }
-                }
-              } catch (Throwable e) {
-                throw e;
+        // Each image is polled and evaluated as its own task (bounded by engineConcurrency). Gate results are written to the report as
+        // each image completes, in the order of the image list file, and only the summary is retained
+        // The rows of the report table are written along, the report page requests them a page at a time
+        console.logDebug("Writing policy evaluation result to " + jenkinsGatesOutputFP.getRemote());
+        String tableRowsFileName = tableFileName(GATES_TABLE_ROWS_PREFIX);
+        String tableIndexFileName = tableFileName(GATES_TABLE_INDEX_PREFIX);
+        try (GatesReportWriter gatesReport = new GatesReportWriter(writeReport(jenkinsGatesOutputFP), input_image_imageDigest.size());
+            ReportTableWriter gatesTable = new ReportTableWriter(tableRowsFileName,
+                new FilePath(jenkinsOutputDirFP, tableRowsFileName).write(), ImageEvaluation.tableSortColumns(),
+                new LinkedHashMap<>(), Collections.emptySet())) {
+          List<Callable<Boolean>> tasks = new ArrayList<>();
+          int counter = 0;
+          for (Map.Entry<String, String> entry : input_image_imageDigest.entrySet()) {
+            int fileCounter = ++counter;
+            tasks.add(() -> {
+              ImageEvaluation evaluation = evaluateImage(httpclient, jenkinsOutputDirFP, fileCounter, entry.getKey(), entry.getValue());
+              try {
+                gatesReport.add(fileCounter - 1, evaluation);
+                evaluation.writeTableRows(gatesTable, fileCounter - 1);
+              } catch (IOException e) {
+                console.logWarn("Failed to write policy evaluation output to " + jenkinsGatesOutputFP.getRemote(), e);
+                throw new AbortException("Failed to write policy evaluation output to " + jenkinsGatesOutputFP.getRemote());
+              } finally {
+                evaluation.discard();
               }
-            } catch (Throwable e) {
-              throw e;
-            }
-          } while (!done && tryCount < maxCount);
+              logGatesSummary(evaluation);
+              return evaluation.isPassed();
+            });
+          }
 
-          if (!done) {
-            if (statusCode != 200) {
-              console.logWarn(
-                  "anchore-enterprise get policy evaluation failed. HTTP method: GET, URL: " + imageURL + ", status: " + statusCode
-                      + ", error: " + serverMessage);
-            }
-            console.logWarn("Exhausted all attempts polling anchore-enterprise. Analysis is incomplete for " + imageDigest);
-            throw new AbortException(
-                "Timed out waiting for anchore-enterprise analysis to complete (increasing engineRetries might help). Check above logs "
-                    + "for errors from anchore-enterprise");
-          } else {
+          for (Boolean passed : runConcurrentlyFailFast(tasks)) {
             // only set to stop if an eval is successful and is reporting fail
-            if (!anchore_eval_status) {
+            if (!passed) {
               finalAction = GATE_ACTION.FAIL;
             }
           }
-        }
 
-        try {
-          console.logDebug("Writing policy evaluation result to " + jenkinsGatesOutputFP.getRemote());
-          try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(jenkinsGatesOutputFP.write(), StandardCharsets.UTF_8))) {
-            bw.write(gate_results.toString());
+          try {
+            gatesReport.finish();
+            gatesTable.finish(new FilePath(jenkinsOutputDirFP, tableIndexFileName).write());
+          } catch (IOException e) {
+            console.logWarn("Failed to write policy evaluation output to " + jenkinsGatesOutputFP.getRemote(), e);
+            throw new AbortException("Failed to write policy evaluation output to " + jenkinsGatesOutputFP.getRemote());
           }
-        } catch (IOException | InterruptedException e) {
-          console.logWarn("Failed to write policy evaluation output to " + jenkinsGatesOutputFP.getRemote(), e);
-          throw new AbortException("Failed to write policy evaluation output to " + jenkinsGatesOutputFP.getRemote());
+
+          generateGatesSummaryV2(gatesReport);
+          gateTableFileName = tableIndexFileName;
         }
 
-        generateGatesSummaryV2(gate_results);
+        if (config.getCacheResults()) {
+          console.logDebug("Controller result cache " + EngineResponseCache.getStats());
+        }
 
         console.logInfo("Anchore Container Image Scanner Plugin step result - " + finalAction);
         return finalAction;
@@ -642,167 +607,225 @@ public class BuildWorker {
 
   }
 
-  private void runVulnerabilityListing() throws AbortException {
-    if (analyzed) {
-      String username = config.getEngineuser();
-      String password = config.getEnginepass();
-      String account = config.getEngineaccount();
-      boolean sslverify = config.getEngineverify();
+  /**
+   * Waits for analysis of a single image to complete and fetches its policy evaluation. Safe to invoke concurrently
+   */
+  private ImageEvaluation evaluateImage(CloseableHttpClient httpclient, FilePath jenkinsOutputDirFP, int counter, String tag,
+      String imageDigest) throws Exception {
+    String account = config.getEngineaccount();
+    String anchoreui = config.getAnchoreui();
+    HttpClientContext context = makeHttpContext();
+
+    console.logInfo("Waiting for analysis of " + tag + ", polling status periodically");
+
+    String imageURL =
+        config.getEngineurl().replaceAll("/+$", "") + "/images/" + imageDigest;
+
+    // Wait for the analysis via the controller wide poller, it polls each digest once for all the builds waiting on it
+    PollSchedule schedule = PollSchedule.create(config);
+    CompletableFuture<JSONObject> analysis = ImageAnalysisPoller.get().awaitAnalysis(config, tag, imageDigest, schedule, console);
+    JSONObject imageResponse;
+    try {
+      imageResponse = analysis.get();
+    } catch (InterruptedException e) {
+      analysis.cancel(true);
+      throw e;
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    }
+    console.logDebug("anchore-enterprise get analysis status for " + tag + ": analyzed");
+
+    String imageRegistry = imageResponse.getJSONArray("image_detail").getJSONObject(0).getString("registry");
+    String imageRepo = imageResponse.getJSONArray("image_detail").getJSONObject(0).getString("repo");
+    String imageTag = imageResponse.getJSONArray("image_detail").getJSONObject(0).getString("tag");
+
+    ImageEvaluation evaluation = null;
+    long retryAfterMillis = -1;
+    Boolean done = false;
+    int statusCode = 200;
+    String serverMessage = null;
+    boolean sleep = false;
+    JSONArray ancestors = null;
+    String baseImageDigest = null;
+
+    do { // try this at least once regardless what the retry count is
+      if (sleep) {
+        long delay = schedule.nextDelayMillis(retryAfterMillis);
+        console.logDebug("Snoozing " + delay + "ms before retrying anchore-enterprise get policy evaluation for " + tag);
+        Thread.sleep(delay);
+        sleep = false;
+        retryAfterMillis = -1;
+        schedule.attempt();
+        console.logDebug("Attempting anchore-enterprise get policy evaluation of " + tag + " (" + schedule + ")");
+      }
+
+      if (null == ancestors) {
+        // Get the list of ancestors to determine base image, only once per image
+        String ancestorsURL = imageURL + "/ancestors";
+        EngineResponse responseAncestors = fetch(httpclient, context, EngineRequestCoalescer.Key.ancestors(config, imageDigest),
+            ancestorsURL);
+        statusCode = responseAncestors.getStatusCode();
+        if (statusCode != 200) {
+          serverMessage = responseAncestors.getBody();
+          retryAfterMillis = responseAncestors.getRetryAfterMillis();
+          console.logDebug(
+              "anchore-enterprise get ancestors failed. URL: " + ancestorsURL + ", status: " + responseAncestors.getStatusLine()
+                  + ", error: " + serverMessage);
+          sleep = true;
+          continue;
+        }
+
+        ancestors = (JSONArray) JSONSerializer.toJSON(responseAncestors.getBody());
+        if (ancestors.size() < 1) {
+          console.logDebug("anchore-enterprise get ancestors response contains no records for image: " + ancestorsURL);
+        }
+        baseImageDigest = resolveBaseDigest(ancestors);
+
+        // The vulnerability listing only depends on the ancestors, fetch it while the policy is being evaluated
+        startVulnerabilityListing(counter, tag, imageDigest, baseImageDigest, ancestors.size() > 0);
+      }
+
+      String policyCheckURL =
+          config.getEngineurl().replaceAll("/+$", "") + "/images/" + imageDigest + "/check?tag=" + tag + "&detail=true";
+      if (null != baseImageDigest) {
+        policyCheckURL += "&base_digest=" + baseImageDigest;
+      }
+      if (!Strings.isNullOrEmpty(config.getPolicyBundleId())) {
+        policyCheckURL += "&policy_id=" + config.getPolicyBundleId();
+      }
+      console.logDebug("anchore-enterprise get policy evaluation URL: " + policyCheckURL);
+
+      EngineResponse responsePolicyCheck = fetch(httpclient, context,
+          EngineRequestCoalescer.Key.check(config, imageDigest, tag, baseImageDigest), policyCheckURL);
+      statusCode = responsePolicyCheck.getStatusCode();
+
+      if (statusCode != 200) {
+        serverMessage = responsePolicyCheck.getBody();
+        retryAfterMillis = responsePolicyCheck.getRetryAfterMillis();
+        console.logDebug(
+            "anchore-enterprise get policy evaluation failed. URL: " + policyCheckURL + ", status: " + statusCode
+                + ", error: " + serverMessage);
+        sleep = true;
+      } else {
+        // Read the response body. Findings inherited from the base image, if excluded, are dropped while the response is copied to
+        // the reports
+        evaluation = readPolicyEvaluation(counter, jenkinsOutputDirFP, imageDigest, responsePolicyCheck);
+
+        if (null == evaluation) {
+          // try again until we get an eval
+          console
+              .logDebug("anchore-enterprise get policy evaluation response contains no evaluations records. May snooze and retry");
+          sleep = true;
+        } else {
+          if (evaluation.isFailureInheritedFromBase()) {
+            console.logInfo("No findings to evaluate after excluding inherited_from_base for " + tag + ". Failure is in base image.");
+          }
+
+          if (!Strings.isNullOrEmpty(anchoreui)) {
+            String encodedImageRegistry = URLEncoder.encode(imageRegistry, StandardCharsets.UTF_8.toString());
+            String encodedImageRepo = URLEncoder.encode(imageRepo, StandardCharsets.UTF_8.toString());
+            if (!Strings.isNullOrEmpty(account)) {
+              evaluation = evaluation.withRepoTag(anchoreui.replaceAll("/+$", "")+"/"+account+"/artifacts/image/"+encodedImageRegistry+"/"+encodedImageRepo+"/"+imageTag+"/"+imageDigest+" "+evaluation.getEvaluatedTag());
+            }
+            else {
+              evaluation = evaluation.withRepoTag(anchoreui.replaceAll("/+$", "")+"/artifacts/image/"+encodedImageRegistry+"/"+encodedImageRepo+"/"+imageTag+"/"+imageDigest+" "+evaluation.getEvaluatedTag());
+            }
+          }
+
+          console.logDebug("anchore-enterprise get policy evaluation result for " + tag + ": " + evaluation.getFinalAction());
+          console.logDebug("anchore-enterprise get policy evaluation status for " + tag + ": " + evaluation.isPassed());
+
+          done = true;
+          console.logInfo("Completed analysis and processed policy evaluation result for " + tag);
+        }
+      }
+    } while (!done && schedule.hasNext());
+
+    if (!done) {
+      if (statusCode != 200) {
+        console.logWarn(
+            "anchore-enterprise get policy evaluation failed. HTTP method: GET, URL: " + imageURL + ", status: " + statusCode
+                + ", error: " + serverMessage);
+      }
+      console.logWarn("Exhausted all attempts polling anchore-enterprise. Analysis is incomplete for " + imageDigest);
+      throw new AbortException(
+          "Timed out waiting for anchore-enterprise analysis to complete (" + schedule.getExhaustedHint() + "). Check above logs "
+              + "for errors from anchore-enterprise");
+    }
 
-      FilePath jenkinsOutputDirFP = new FilePath(workspace, jenkinsOutputDirName);
-      int counter = 0;
+    return evaluation;
+  }
 
-      CredentialsProvider credsProvider = new BasicCredentialsProvider();
-      credsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(username, password));
-      HttpClientContext context = HttpClientContext.create();
-      context.setCredentialsProvider(credsProvider);
+  private void runVulnerabilityListing() throws AbortException {
+    if (analyzed) {
+      FilePath jenkinsOutputDirFP = reportDir;
+      HttpClientContext context = makeHttpContext();
+      CloseableHttpClient httpclient = EngineClientRegistry.get(config.getEngineurl(), config.getEngineaccount(), config.getEngineverify());
 
+      String fileName = reportFileName(CVE_LISTING_PREFIX);
+      FilePath jenkinsQueryOutputFP = new FilePath(jenkinsOutputDirFP, fileName);
       try {
-        JSONObject securityJson = new JSONObject();
         JSONArray columnsJson = new JSONArray();
-        for (String column : Arrays.asList("Tag", "CVE ID", "Severity", "Vulnerability Package", "Fix Available", "Inherited From Base", "URL")) {
+        for (String column : CVE_LISTING_COLUMNS) {
           JSONObject columnJson = new JSONObject();
           columnJson.put("title", column);
           columnsJson.add(columnJson);
         }
-        JSONArray dataJson = new JSONArray();
-
-        for (Map.Entry<String, String> entry : input_image_imageDigest.entrySet()) {
-          String input = entry.getKey();
-          String digest = entry.getValue();
-
-          try (CloseableHttpClient httpclient = makeHttpClient(sslverify, account)) {
-            String ancestorsURL = config.getEngineurl().replaceAll("/+$", "") + "/images/" + digest + "/ancestors";
-            HttpGet httpgetAncestors = new HttpGet(ancestorsURL);
-            httpgetAncestors.addHeader("Content-Type", "application/json");
-            
-            try (CloseableHttpResponse responseAncestors = httpclient.execute(httpgetAncestors, context)) {
-              int statusCode = responseAncestors.getStatusLine().getStatusCode();
-              if (statusCode != 200) {
-                String serverMessage = EntityUtils.toString(responseAncestors.getEntity());
-                console.logDebug(
-                    "anchore-enterprise get ancestors failed. URL: " + ancestorsURL + ", status: " + responseAncestors.getStatusLine()
-                        + ", error: " + serverMessage);
-                throw new AbortException("Failed to fetch vulnerability listing from anchore-enterprise");
-              } else {
-                // Get the last ancestor to determine the base image
-                String responseBodyAncestors = EntityUtils.toString(responseAncestors.getEntity());
-
-                String vulnListURL = null;
-
-                JSONArray ancestors = (JSONArray) JSONSerializer.toJSON(responseBodyAncestors);
-                if (ancestors.size() < 1) {
-                  console.logDebug("anchore-enterprise get ancestors response contains no records for image: " + ancestorsURL);
-                  vulnListURL = config.getEngineurl().replaceAll("/+$", "") + "/images/" + digest + "/vuln/all";
-                } else {
-                  String baseImageDigest = null;
-
-                  // Get the chosen_base image from API
-                  for (int i = 0; i < ancestors.size(); i++) {
-                    JSONObject ancestor = ancestors.getJSONObject(i);
-                    // If chosen_base_image key exists in the response, use it.
-                    // This is required for compatibility with < Anchore Enterprise 5.7
-                    if (ancestor.has("chosen_base_image")) {
-                      if (ancestor.getBoolean("chosen_base_image")) {
-                        console.logDebug("found base image from API");
-                        baseImageDigest = ancestor.getString("image_digest");
-                        break;
-                      }
-                    }
-                  }
 
-                  // Get the last ancestor to determine the base image if no chosen_base image from API
-                  // This is required for compatibility with < Anchore Enterprise 5.7
-                  if (baseImageDigest == null) {
-                    JSONObject lastAncestor = ancestors.getJSONObject(ancestors.size() - 1);
-                    baseImageDigest = lastAncestor.getString("image_digest");
+        // Rows of each image were extracted while its listing was downloaded, splice them into the table in the order of the image list.
+        // The rows are also added to the report table the Security tab requests a page at a time. In the compact format, the columns
+        // whose values repeat across rows are dictionary encoded, both in the listing and in the rows of the report table
+        console.logDebug("Writing vulnerability listing result to " + jenkinsQueryOutputFP.getRemote());
+        String tableRowsFileName = tableFileName(CVE_TABLE_ROWS_PREFIX);
+        String tableIndexFileName = tableFileName(CVE_TABLE_INDEX_PREFIX);
+        Set<Integer> encodedColumns =
+            config.getCompactReports() ? VulnerabilityListingParser.tableEncodedColumns() : Collections.<Integer>emptySet();
+        try (OutputStream out = new BufferedOutputStream(writeReport(jenkinsQueryOutputFP));
+            ReportTableWriter cveTable = new ReportTableWriter(tableRowsFileName,
+                new FilePath(jenkinsOutputDirFP, tableRowsFileName).write(), VulnerabilityListingParser.tableSortColumns(),
+                VulnerabilityListingParser.tableFacets(), encodedColumns)) {
+          CompactTableWriter compactTable =
+              config.getCompactReports() ? new CompactTableWriter(out, CVE_LISTING_COLUMNS, encodedColumns) : null;
+          VulnerabilityCounts counts = new VulnerabilityCounts();
+          if (null == compactTable) {
+            out.write(("{\"columns\":" + columnsJson.toString() + ",\"data\":[").getBytes(StandardCharsets.UTF_8));
+          }
+          boolean first = true;
+          int counter = 0;
+          for (Map.Entry<String, String> entry : input_image_imageDigest.entrySet()) {
+            VulnerabilityListing listing = awaitVulnerabilityListing(httpclient, context, ++counter, entry.getKey(), entry.getValue());
+            int index = counter - 1;
+            try {
+              if (listing.rowCount > 0) {
+                if (null == compactTable) {
+                  if (!first) {
+                    out.write(',');
                   }
-
-                  vulnListURL = config.getEngineurl().replaceAll("/+$", "") + "/images/" + digest + "/vuln/all"
-                          + "?base_digest=" + baseImageDigest;
+                  Files.copy(listing.rowsFile.toPath(), out);
                 }
-
-                console.logInfo("Querying vulnerability listing for " + input);
-                HttpGet httpget = new HttpGet(vulnListURL);
-                httpget.addHeader("Content-Type", "application/json");
-
-                console.logDebug("anchore-enterprise get vulnerability listing URL: " + vulnListURL);
-                try (CloseableHttpResponse response = httpclient.execute(httpget, context)) {
-                  statusCode = response.getStatusLine().getStatusCode();
-                  if (statusCode != 200) {
-                    String serverMessage = EntityUtils.toString(response.getEntity());
-                    console.logWarn(
-                        "anchore-enterprise get vulnerability listing failed. URL: " + vulnListURL + ", status: " + response.getStatusLine()
-                            + ", error: " + serverMessage);
-                    throw new AbortException("Failed to fetch vulnerability listing from anchore-enterprise");
-                  } else {
-                    String responseBody = EntityUtils.toString(response.getEntity());
-                    // Write api response to a file as it is
-                    String jenkinsAEResponseFileName = AE_VULNS_PREFIX + (++counter) + JSON_FILE_EXTENSION;
-                    FilePath jenkinsAEResponseFP = new FilePath(jenkinsOutputDirFP, jenkinsAEResponseFileName);
-                    try {
-                      console.logDebug("Writing anchore-enterprise vulnerabilities listing response to " + jenkinsAEResponseFP.getRemote());
-                      try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(jenkinsAEResponseFP.write(), StandardCharsets.UTF_8))) {
-                        bw.write(responseBody);
-                      }
-                    } catch (IOException | InterruptedException e) {
-                      console.logWarn("Failed to write anchore-enterprise vulnerabilities listing response to " + jenkinsAEResponseFP.getRemote(), e);
-                      throw new AbortException("Failed to write anchore-enterprise vulnerabilities listing response to " + jenkinsAEResponseFP.getRemote());
-                    }
-
-                    JSONObject responseJson = JSONObject.fromObject(responseBody);
-                    JSONArray vulList = responseJson.getJSONArray("vulnerabilities");
-                    for (int i = 0; i < vulList.size(); i++) {
-                      JSONObject vulnJson = vulList.getJSONObject(i);
-                      JSONArray vulnArray = new JSONArray();
-                      if (ancestors.size() < 1) {
-                        vulnArray.addAll(Arrays
-                            .asList(input, vulnJson.getString("vuln"), vulnJson.getString("severity"), vulnJson.getString("package"),
-                                vulnJson.getString("fix"), "false", vulnJson.getString("url")));
-                      } else {
-                        if (config.getExcludeFromBaseImage()) {
-                          if (vulnJson.getString("inherited_from_base").equals("true")) {
-                            continue;
-                          } else {
-                            vulnArray.addAll(Arrays
-                                .asList(input, vulnJson.getString("vuln"), vulnJson.getString("severity"), vulnJson.getString("package"),
-                                    vulnJson.getString("fix"), vulnJson.getString("inherited_from_base"), vulnJson.getString("url")));
-                          }
-                          
-                        } else {
-                          vulnArray.addAll(Arrays
-                              .asList(input, vulnJson.getString("vuln"), vulnJson.getString("severity"), vulnJson.getString("package"),
-                                  vulnJson.getString("fix"), vulnJson.getString("inherited_from_base"), vulnJson.getString("url")));
-                        }
-                      }
-                      dataJson.add(vulnArray);
-                    }
+                VulnerabilityListingParser.readRows(listing.rowsFile, row -> {
+                  cveTable.add(index, row);
+                  counts.add(row);
+                  if (null != compactTable) {
+                    compactTable.add(row);
                   }
-                } catch (Throwable t) {
-                  throw t;
-                }
+                });
+                first = false;
               }
-            } catch (Throwable t) {
-              throw t;
+            } finally {
+              Files.deleteIfExists(listing.rowsFile.toPath());
             }
-          } catch (Throwable t) {
-            throw t;
           }
-        }
-        securityJson.put("columns", columnsJson);
-        securityJson.put("data", dataJson);
-
-        cveListingFileName = CVE_LISTING_PREFIX + JSON_FILE_EXTENSION;
-        FilePath jenkinsQueryOutputFP = new FilePath(jenkinsOutputDirFP, cveListingFileName);
-        try {
-          console.logDebug("Writing vulnerability listing result to " + jenkinsQueryOutputFP.getRemote());
-          try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(jenkinsQueryOutputFP.write(), StandardCharsets.UTF_8))) {
-            bw.write(securityJson.toString());
+          if (null != compactTable) {
+            compactTable.finish();
+          } else {
+            out.write("]}".getBytes(StandardCharsets.UTF_8));
           }
-        } catch (IOException | InterruptedException e) {
-          console.logWarn("Failed to write vulnerability listing to " + jenkinsQueryOutputFP.getRemote(), e);
-          throw new AbortException("Failed to write vulnerability listing to " + jenkinsQueryOutputFP.getRemote());
+          cveTable.finish(new FilePath(jenkinsOutputDirFP, tableIndexFileName).write());
+          vulnerabilityCounts = counts;
         }
+        cveListingFileName = fileName;
+        cveTableFileName = tableIndexFileName;
       } catch (AbortException e) { // probably caught one of the thrown exceptions, let it pass through
         throw e;
       } catch (Exception e) { // caught unknown exception, log it and wrap it
@@ -819,86 +842,164 @@ public class BuildWorker {
     }
   }
 
-  private void generateGatesSummaryV2(JSONArray gatesJson) {
-    console.logDebug("Summarizing policy evaluation results");
+  /**
+   * Picks the base image from the ancestors of an image: the one flagged as chosen_base_image by anchore-enterprise, or the last
+   * ancestor for anchore-enterprise versions that don't flag it
+   *
+   * @return digest of the base image or null if the image has no ancestors
+   */
+  private String resolveBaseDigest(JSONArray ancestors) {
+    if (ancestors.size() < 1) {
+      return null;
+    }
 
-    if (gatesJson != null) {
-      JSONArray summaryRows = new JSONArray();
-
-      for (Object gateResult : gatesJson) {
-        JSONArray evaluationFindingContent = JSONObject.fromObject(gateResult).getJSONArray("gate_results");
-        String repoTag = JSONObject.fromObject(gateResult).getString("repo_tag");
-        String imageDigest = JSONObject.fromObject(gateResult).getString("image_digest");
-        String final_action = JSONObject.fromObject(gateResult).getString("final_action");
-        String failure_details = JSONObject.fromObject(gateResult).getString("failure_details");
-        int stop = 0, warn = 0, go = 0, stop_wl = 0, warn_wl = 0, go_wl = 0;
-
-        for (Object finding : evaluationFindingContent) {
-          if (null != finding) {
-
-            JSONObject currentFinding = JSONObject.fromObject(finding);
-            
-            Boolean isAllowlisted = currentFinding.getBoolean("allowlisted");
-
-            switch (currentFinding.getString("action").toLowerCase()) {
-              case "stop":
-                stop++;
-                stop_wl = isAllowlisted ? ++stop_wl : stop_wl;
-                break;
-              case "warn":
-                warn++;
-                warn_wl = isAllowlisted ? ++warn_wl : warn_wl;
-                break;
-              case "go":
-                go++;
-                go_wl = isAllowlisted ? ++go_wl : go_wl;
-                break;
-              default:
-                break;
-            }
-          }
+    // Get the chosen_base image from API
+    for (int i = 0; i < ancestors.size(); i++) {
+      JSONObject ancestor = ancestors.getJSONObject(i);
+      // If chosen_base_image key exists in the response, use it.
+      // This is required for compatibility with < Anchore Enterprise 5.7
+      if (ancestor.has("chosen_base_image")) {
+        if (ancestor.getBoolean("chosen_base_image")) {
+          console.logDebug("found base image from API");
+          return ancestor.getString("image_digest");
         }
+      }
+    }
 
-        totalStopActionCount += (stop - stop_wl);
-        totalWarnActionCount += (warn - warn_wl);
-        totalGoActionCount += (go - go_wl);
-        
-        if (!Strings.isNullOrEmpty(repoTag)) {
-          console.logInfo("Policy evaluation summary for " + repoTag + " - stop: " + (stop - stop_wl) + " (+" + stop_wl
-              + " allowlisted), warn: " + (warn - warn_wl) + " (+" + warn_wl + " allowlisted), go: " + (go - go_wl) + " (+"
-              + go_wl + " allowlisted), final: " + final_action);
-
-          JSONObject summaryRow = new JSONObject();
-          summaryRow.put(GATE_SUMMARY_COLUMN.Repo_Tag.toString(), repoTag);
-          summaryRow.put(GATE_SUMMARY_COLUMN.Stop_Actions.toString(), (stop - stop_wl));
-          summaryRow.put(GATE_SUMMARY_COLUMN.Warn_Actions.toString(), (warn - warn_wl));
-          summaryRow.put(GATE_SUMMARY_COLUMN.Go_Actions.toString(), (go - go_wl));
-          summaryRow.put(GATE_SUMMARY_COLUMN.Final_Action.toString(), final_action);
-          summaryRow.put(GATE_SUMMARY_COLUMN.Stop_Action_Details.toString(), failure_details);
-          summaryRows.add(summaryRow);
-        } else {
-          console.logInfo("Policy evaluation summary for " + imageDigest + " - stop: " + (stop - stop_wl) + " (+" + stop_wl
-              + " allowlisted), warn: " + (warn - warn_wl) + " (+" + warn_wl + " allowlisted), go: " + (go - go_wl) + " (+"
-              + go_wl + " allowlisted), final: " + final_action);
-          JSONObject summaryRow = new JSONObject();
-          summaryRow.put(GATE_SUMMARY_COLUMN.Repo_Tag.toString(), repoTag.toString());
-          summaryRow.put(GATE_SUMMARY_COLUMN.Stop_Actions.toString(), (stop - stop_wl));
-          summaryRow.put(GATE_SUMMARY_COLUMN.Warn_Actions.toString(), (warn - warn_wl));
-          summaryRow.put(GATE_SUMMARY_COLUMN.Go_Actions.toString(), (go - go_wl));
-          summaryRow.put(GATE_SUMMARY_COLUMN.Final_Action.toString(), final_action);
-          summaryRow.put(GATE_SUMMARY_COLUMN.Stop_Action_Details.toString(), failure_details);
-          summaryRows.add(summaryRow);
-
-          //console.logWarn("Repo_Tag element not found in gate output, skipping summary computation for " + imageKey);
-          console.logWarn("Repo_Tag element not found in gate output, using imageDigest: " + imageDigest);
-        }
+    // Get the last ancestor to determine the base image if no chosen_base image from API
+    // This is required for compatibility with < Anchore Enterprise 5.7
+    return ancestors.getJSONObject(ancestors.size() - 1).getString("image_digest");
+  }
+
+  /**
+   * Starts fetching the vulnerability listing of an image in the background, consumed later by {@link #runVulnerabilityListing()}
+   */
+  private void startVulnerabilityListing(int counter, String tag, String imageDigest, String baseImageDigest, boolean hasAncestors) {
+    CloseableHttpClient httpclient = EngineClientRegistry.get(config.getEngineurl(), config.getEngineaccount(), config.getEngineverify());
+    vulnerabilityListings.put(tag, CompletableFuture.supplyAsync(() -> {
+      try {
+        return fetchVulnerabilityListing(httpclient, makeHttpContext(), counter, tag, imageDigest, baseImageDigest, hasAncestors);
+      } catch (Exception e) {
+        throw new CompletionException(e);
       }
-      gateSummary = new JSONObject();
-      gateSummary.put("header", generateDataTablesColumnsForGateSummary());
-      gateSummary.put("rows", summaryRows);
-    } else { // could not load gates output to json object
-      console.logWarn("Invalid input to generate gates summary");
+    }, getRequestExecutor()));
+  }
+
+  /**
+   * Returns the vulnerability listing of an image, waiting for the fetch started during policy evaluation or fetching it now if there
+   * is none
+   */
+  private VulnerabilityListing awaitVulnerabilityListing(CloseableHttpClient httpclient, HttpClientContext context, int counter,
+      String tag, String imageDigest) throws Exception {
+    CompletableFuture<VulnerabilityListing> listing = vulnerabilityListings.get(tag);
+    if (null != listing) {
+      try {
+        return listing.get();
+      } catch (ExecutionException e) {
+        throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+      }
+    }
+
+    String ancestorsURL = config.getEngineurl().replaceAll("/+$", "") + "/images/" + imageDigest + "/ancestors";
+    EngineResponse responseAncestors = fetch(httpclient, context, EngineRequestCoalescer.Key.ancestors(config, imageDigest),
+        ancestorsURL);
+    if (responseAncestors.getStatusCode() != 200) {
+      console.logDebug(
+          "anchore-enterprise get ancestors failed. URL: " + ancestorsURL + ", status: " + responseAncestors.getStatusLine()
+              + ", error: " + responseAncestors.getBody());
+      throw new AbortException("Failed to fetch vulnerability listing from anchore-enterprise");
+    }
+    JSONArray ancestors = (JSONArray) JSONSerializer.toJSON(responseAncestors.getBody());
+    if (ancestors.size() < 1) {
+      console.logDebug("anchore-enterprise get ancestors response contains no records for image: " + ancestorsURL);
+    }
+    return fetchVulnerabilityListing(httpclient, context, counter, tag, imageDigest, resolveBaseDigest(ancestors),
+        ancestors.size() > 0);
+  }
+
+  /**
+   * Fetches the vulnerability listing of an image like the other reads (see {@link #fetch}), so builds listing the same image at the
+   * same time share one request and jobs that opt in reuse recent listings. The response is spooled to a temporary file rather than
+   * held in memory, see {@link EngineResponse}. It is then copied to the reports as it is while the rows of the vulnerability table
+   * are extracted into another temporary file on the controller
+   */
+  private VulnerabilityListing fetchVulnerabilityListing(CloseableHttpClient httpclient, HttpClientContext context, int counter,
+      String tag, String imageDigest, String baseImageDigest, boolean hasAncestors) throws IOException, InterruptedException {
+    String vulnListURL = config.getEngineurl().replaceAll("/+$", "") + "/images/" + imageDigest + "/vuln/all";
+    if (null != baseImageDigest) {
+      vulnListURL += "?base_digest=" + baseImageDigest;
+    }
+
+    console.logInfo("Querying vulnerability listing for " + tag);
+    console.logDebug("anchore-enterprise get vulnerability listing URL: " + vulnListURL);
+    EngineResponse response = fetch(httpclient, context,
+        EngineRequestCoalescer.Key.vulnerabilities(config, imageDigest, baseImageDigest), vulnListURL);
+    if (response.getStatusCode() != 200) {
+      console.logWarn(
+          "anchore-enterprise get vulnerability listing failed. URL: " + vulnListURL + ", status: " + response.getStatusLine()
+              + ", error: " + response.getBody());
+      throw new AbortException("Failed to fetch vulnerability listing from anchore-enterprise");
+    }
+
+    // Write api response to a file as it is
+    FilePath jenkinsAEResponseFP = new FilePath(reportDir,
+        reportFileName(AE_VULNS_PREFIX + counter));
+    File rowsFile = File.createTempFile("anchore-vulns-", JSON_FILE_EXTENSION);
+    console.logDebug("Writing anchore-enterprise vulnerabilities listing response to " + jenkinsAEResponseFP.getRemote());
+    try (InputStream body = response.openBody();
+        OutputStream responseCopy = new BufferedOutputStream(writeReport(jenkinsAEResponseFP));
+        OutputStream rows = new BufferedOutputStream(new FileOutputStream(rowsFile))) {
+      int rowCount = VulnerabilityListingParser
+          .writeRows(new TeeInputStream(body, responseCopy), rows, tag, hasAncestors, config.getExcludeFromBaseImage());
+      console.logDebug("Extracted " + rowCount + " vulnerability listing record(s) for " + tag);
+      return new VulnerabilityListing(rowsFile, rowCount);
+    } catch (IOException | InterruptedException | RuntimeException e) {
+      Files.deleteIfExists(rowsFile.toPath());
+      console.logWarn("Failed to process anchore-enterprise vulnerabilities listing response for " + tag, e);
+      throw new AbortException("Failed to process anchore-enterprise vulnerabilities listing response for " + tag);
+    }
+  }
+
+  /**
+   * @return executor for requests issued in the background on behalf of this build, shut down by {@link #cleanup()}. Runs as many
+   * requests at a time as the engine concurrency of the build allows, whatever the number of images
+   */
+  private synchronized ExecutorService getRequestExecutor() {
+    if (null == requestExecutor) {
+      requestExecutor = Executors.newFixedThreadPool(Math.max(1, Integer.parseInt(config.getEngineConcurrency())),
+          new NamingThreadFactory(new DaemonThreadFactory(), "AnchoreWorker " + buildId + " requests"));
     }
+    return requestExecutor;
+  }
+
+
+  /**
+   * Logs the policy evaluation summary of an image as soon as it is evaluated
+   */
+  private void logGatesSummary(ImageEvaluation evaluation) {
+    if (!Strings.isNullOrEmpty(evaluation.getRepoTag())) {
+      console.logInfo("Policy evaluation summary for " + evaluation.getRepoTag() + " - " + evaluation.getCounts() + ", final: "
+          + evaluation.getFinalAction());
+    } else {
+      console.logInfo("Policy evaluation summary for " + evaluation.getImageDigest() + " - " + evaluation.getCounts() + ", final: "
+          + evaluation.getFinalAction());
+      console.logWarn("Repo_Tag element not found in gate output, using imageDigest: " + evaluation.getImageDigest());
+    }
+  }
+
+  private void generateGatesSummaryV2(GatesReportWriter gatesReport) {
+    console.logDebug("Summarizing policy evaluation results");
+
+    JSONArray summaryRows = new JSONArray();
+    summaryRows.addAll(gatesReport.getSummaryRows());
+    totalActionCounts.add(gatesReport.getTotals());
+    for (JSONObject summaryRow : gatesReport.getSummaryRows()) {
+      imageActionCounts.add(summaryRow.optString(GATE_SUMMARY_COLUMN.Final_Action.toString()), false);
+    }
+
+    gateSummary = new JSONObject();
+    gateSummary.put("header", generateDataTablesColumnsForGateSummary());
+    gateSummary.put("rows", summaryRows);
   }
 
   public void runQueries() throws AbortException {
@@ -911,8 +1012,12 @@ public class BuildWorker {
       console.logDebug("Archiving results");
       //      FilePath buildWorkspaceFP = build.getWorkspace();
       //      if (null != buildWorkspaceFP) {
-      ArtifactArchiver artifactArchiver = new ArtifactArchiver(jenkinsOutputDirName + "/");
-      artifactArchiver.perform(build, workspace, launcher, listener);
+      if (null != stagingDir) {
+        archiveStagedReports();
+      } else {
+        ArtifactArchiver artifactArchiver = new ArtifactArchiver(jenkinsOutputDirName + "/");
+        artifactArchiver.perform(build, workspace, launcher, listener);
+      }
       //      } else {
       //        console.logError("Unable to archive results due to an invalid reference to Jenkins build workspace");
       //        throw new AbortException("Unable to archive results due to an invalid reference to Jenkins build workspace");
@@ -922,13 +1027,18 @@ public class BuildWorker {
       console.logDebug("Setting up build results");
 
       
+      AnchoreAction action;
       if (finalAction != null) {
-        build.addAction(new AnchoreAction(build, finalAction.toString(), jenkinsOutputDirName, gateOutputFileName, queryOutputMap,
-            gateSummary.toString(), cveListingFileName, totalStopActionCount, totalWarnActionCount, totalGoActionCount));
+        action = new AnchoreAction(build, finalAction.toString(), jenkinsOutputDirName, gateOutputFileName, queryOutputMap,
+            gateSummary.toString(), cveListingFileName, totalActionCounts.getStop(), totalActionCounts.getWarn(),
+            totalActionCounts.getGo());
       } else {
-        build.addAction(new AnchoreAction(build, "", jenkinsOutputDirName, gateOutputFileName, queryOutputMap, gateSummary.toString(),
-            cveListingFileName, totalStopActionCount, totalWarnActionCount, totalGoActionCount));
+        action = new AnchoreAction(build, "", jenkinsOutputDirName, gateOutputFileName, queryOutputMap, gateSummary.toString(),
+            cveListingFileName, totalActionCounts.getStop(), totalActionCounts.getWarn(), totalActionCounts.getGo());
       }
+      action.setReportTables(gateTableFileName, cveTableFileName);
+      action.setTrendCounts(imageActionCounts, vulnerabilityCounts);
+      build.addAction(action);
       //    } catch (AbortException e) { // probably caught one of the thrown exceptions, let it pass through
       //      throw e;
     } catch (Exception e) { // caught unknown exception, log it and wrap it
@@ -939,6 +1049,23 @@ public class BuildWorker {
   }
 
   public void cleanup() {
+    synchronized (this) {
+      if (null != requestExecutor) {
+        requestExecutor.shutdownNow();
+        requestExecutor = null;
+      }
+    }
+    // Remove the temporary files of vulnerability listings that were not consumed
+    for (CompletableFuture<VulnerabilityListing> listing : vulnerabilityListings.values()) {
+      VulnerabilityListing result = listing.isDone() && !listing.isCompletedExceptionally() ? listing.join() : null;
+      if (null != result) {
+        try {
+          Files.deleteIfExists(result.rowsFile.toPath());
+        } catch (IOException | RuntimeException e) {
+          console.logDebug("Failed to delete " + result.rowsFile, e);
+        }
+      }
+    }
     try {
       console.logDebug("Cleaning up build artifacts");
       int rc;
@@ -989,19 +1116,22 @@ public class BuildWorker {
               + "and try again");
     }
 
+    // The image list and its Dockerfiles are read on the agent in one call, see ImageListCollector
     try {
-      if (!new FilePath(workspace, config.getName()).exists()) {
-        console.logError("Cannot find image list file \"" + config.getName() + "\" under " + workspace);
-        throw new AbortException("Cannot find image list file \'" + config.getName()
-            + "\'. Please ensure that image list file is created prior to Anchore Container Image Scanner step");
-      }
-    } catch (AbortException e) {
+      imageList = workspace.act(new ImageListCollector(config.getName()));
+    } catch (AbortException e) { // a Dockerfile of the image list is missing
+      console.logError(e.getMessage());
       throw e;
     } catch (Exception e) {
       console.logWarn("Unable to access image list file \"" + config.getName() + "\" under " + workspace, e);
       throw new AbortException("Unable to access image list file " + config.getName()
           + ". Please ensure that image list file is created prior to Anchore Container Image Scanner step");
     }
+    if (null == imageList) {
+      console.logError("Cannot find image list file \"" + config.getName() + "\" under " + workspace);
+      throw new AbortException("Cannot find image list file \'" + config.getName()
+          + "\'. Please ensure that image list file is created prior to Anchore Container Image Scanner step");
+    }
   }
 
   private void initializeJenkinsWorkspace() throws AbortException {
@@ -1016,16 +1146,23 @@ public class BuildWorker {
       // ArtifactArchiver.perform() cannot parse file paths with commas, which buildId will have in some cases, for
       // example if this is a matrix job. So replace any commas in it with underscores to separate the matrix values.
       jenkinsOutputDirName = JENKINS_DIR_NAME;
-      FilePath jenkinsReportDir = new FilePath(workspace, jenkinsOutputDirName);
+      if (config.getArchiveReportsDirectly()) {
+        // Reports are written where the responses are fetched and archived from there, the workspace is not used
+        stagingDir = new FilePath(Files.createTempDirectory("anchore-report-").toFile());
+        reportDir = new FilePath(stagingDir, jenkinsOutputDirName);
+        console.logDebug("Staging reports in " + reportDir.getRemote());
+      } else {
+        reportDir = new FilePath(workspace, jenkinsOutputDirName);
+      }
 
       // Create output directories
-      if (!jenkinsReportDir.exists()) {
-        console.logDebug("Creating workspace directory " + jenkinsOutputDirName);
-        jenkinsReportDir.mkdirs();
+      if (!reportDir.exists()) {
+        console.logDebug("Creating report directory " + jenkinsOutputDirName);
+        reportDir.mkdirs();
       }
 
       queryOutputMap = new LinkedHashMap<>(); // maintain the ordering of queries
-      gateOutputFileName = GATES_OUTPUT_PREFIX + JSON_FILE_EXTENSION;
+      gateOutputFileName = reportFileName(GATES_OUTPUT_PREFIX);
 
     } catch (AbortException e) { // probably caught one of the thrown exceptions, let it pass through
       throw e;
@@ -1043,47 +1180,17 @@ public class BuildWorker {
     try {
       console.logDebug("Initializing Anchore workspace (enginemode)");
 
-      // get the input and store it in tag/dockerfile map
-      FilePath inputImageFP = new FilePath(workspace, config.getName()); // Already checked in checkConfig()
-      try (BufferedReader br = new BufferedReader(new InputStreamReader(inputImageFP.read(), StandardCharsets.UTF_8))) {
-        String line;
-        int count = 0;
-        while ((line = br.readLine()) != null) {
-          String imgId = null;
-          String jenkinsDFile = null;
-          String dfilecontents = null;
-          Iterable<String> iterable = Util.IMAGE_LIST_SPLITTER.split(line);
-          Iterator<String> partIterator;
-
-          if (null != iterable && null != (partIterator = iterable.iterator()) && partIterator.hasNext()) {
-            imgId = partIterator.next();
-
-            if (partIterator.hasNext()) {
-              jenkinsDFile = partIterator.next();
-
-              StringBuilder b = new StringBuilder();
-              FilePath myfp = new FilePath(workspace, jenkinsDFile);
-              try (BufferedReader mybr = new BufferedReader(new InputStreamReader(myfp.read(), StandardCharsets.UTF_8))) {
-                String myline;
-                while ((myline = mybr.readLine()) != null) {
-                  b.append(myline + '\n');
-                }
-              }
-              console.logDebug("Dockerfile contents: " + b.toString());
-              byte[] encodedBytes = Base64.encodeBase64(b.toString().getBytes(StandardCharsets.UTF_8));
-              dfilecontents = new String(encodedBytes, StandardCharsets.UTF_8);
-
-            }
-          }
-          if (null != imgId) {
-            console.logDebug("Image tag/digest: " + imgId);
-            console.logDebug("Base64 encoded Dockerfile contents: " + dfilecontents);
-            input_image_dfile.put(imgId, dfilecontents);
-          }
+      // store the image list read by checkConfig() in tag/dockerfile map
+      for (Map.Entry<String, String> entry : imageList.entrySet()) {
+        String imgId = entry.getKey();
+        String dfilecontents = entry.getValue();
+        if (null != dfilecontents && console.isEnableDebug()) {
+          console.logDebug("Dockerfile contents: " + new String(Base64.decodeBase64(dfilecontents), StandardCharsets.UTF_8));
         }
+        console.logDebug("Image tag/digest: " + imgId);
+        console.logDebug("Base64 encoded Dockerfile contents: " + dfilecontents);
+        input_image_dfile.put(imgId, dfilecontents);
       }
-    } catch (AbortException e) { // probably caught one of the thrown exceptions, let it pass through
-      throw e;
     } catch (Exception e) { // caught unknown exception, console.log it and wrap it
       console.logError("Failed to initialize Anchore workspace due to an unexpected error", e);
       throw new AbortException(
@@ -1102,8 +1209,39 @@ public class BuildWorker {
     return headers;
   }
 
+  /**
+   * Archives the reports staged on the controller into the artifact storage of the build, under the same paths the workspace reports
+   * would be archived with
+   */
+  private void archiveStagedReports() throws IOException, InterruptedException {
+    Map<String, String> artifacts = new LinkedHashMap<>();
+    for (FilePath report : reportDir.list()) {
+      String path = jenkinsOutputDirName + "/" + report.getName();
+      artifacts.put(path, path);
+    }
+    console.logDebug("Archiving " + artifacts.size() + " report(s) from " + reportDir.getRemote());
+    build.pickArtifactManager().archive(stagingDir, new Launcher.LocalLauncher(listener), BuildListenerAdapter.wrap(listener), artifacts);
+  }
+
   private void cleanJenkinsWorkspaceQuietly() throws IOException, InterruptedException {
-    FilePath jenkinsOutputDirFP = new FilePath(workspace, jenkinsOutputDirName);
-    jenkinsOutputDirFP.deleteRecursive();
+    if (null != stagingDir) {
+      stagingDir.deleteRecursive();
+    } else if (null != reportDir) {
+      reportDir.deleteRecursive();
+    }
+  }
+
+  /**
+   * Rows of the vulnerability table for a single image, in a temporary file on the controller
+   */
+  private static final class VulnerabilityListing {
+
+    private final File rowsFile;
+    private final int rowCount;
+
+    private VulnerabilityListing(File rowsFile, int rowCount) {
+      this.rowsFile = rowsFile;
+      this.rowCount = rowCount;
+    }
   }
 }
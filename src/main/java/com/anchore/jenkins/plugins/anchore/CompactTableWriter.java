@@ -0,0 +1,100 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes a table in the compact report format, version {@value #VERSION}: the distinct values of the encoded columns are interned
+ * into a dictionary per column and rows hold the positions of their values in the dictionaries. Other columns hold the values
+ * themselves and have a null dictionary. Rows are written as they are added, only the dictionaries are kept and they are written
+ * after the rows.
+ *
+ * <pre>
+ * {"version":2,"columns":[{"title":"Tag"},{"title":"CVE ID"},...],"data":[[0,"CVE-1",1,...],...],"dictionaries":[["tag"],null,...]}
+ * </pre>
+ *
+ * <p>Memory use grows with the number of distinct values of the encoded columns, so only columns whose values repeat across rows
+ * should be encoded. Tables without a version are in the original format, with the values themselves in the rows.</p>
+ */
+final class CompactTableWriter {
+
+  static final int VERSION = 2;
+
+  private final JsonGenerator generator;
+  private final List<Map<String, Integer>> dictionaries = new ArrayList<>(); // null for columns that are not encoded
+
+  /**
+   * @param destination stream of the report, not closed
+   * @param columnTitles titles of the columns
+   * @param encodedColumns columns to dictionary encode
+   * @throws IOException if the report cannot be written
+   */
+  CompactTableWriter(OutputStream destination, List<String> columnTitles, Set<Integer> encodedColumns) throws IOException {
+    generator = ReportTableWriter.MAPPER.getFactory().createGenerator(destination);
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    generator.writeStartObject();
+    generator.writeNumberField("version", VERSION);
+    generator.writeArrayFieldStart("columns");
+    for (String title : columnTitles) {
+      generator.writeStartObject();
+      generator.writeStringField("title", title);
+      generator.writeEndObject();
+      dictionaries.add(encodedColumns.contains(dictionaries.size()) ? new LinkedHashMap<>() : null);
+    }
+    generator.writeEndArray();
+    generator.writeArrayFieldStart("data");
+  }
+
+  /**
+   * @param cells values of the row, one per column
+   * @throws IOException if the row cannot be written
+   */
+  void add(List<String> cells) throws IOException {
+    generator.writeStartArray();
+    for (int i = 0; i < dictionaries.size(); i++) {
+      Map<String, Integer> dictionary = dictionaries.get(i);
+      String value = i < cells.size() ? cells.get(i) : "";
+      if (null == dictionary) {
+        generator.writeString(value);
+        continue;
+      }
+      Integer code = dictionary.get(value);
+      if (null == code) {
+        code = dictionary.size();
+        dictionary.put(value, code);
+      }
+      generator.writeNumber(code);
+    }
+    generator.writeEndArray();
+  }
+
+  /**
+   * Writes the dictionaries and completes the report
+   *
+   * @throws IOException if the report cannot be written
+   */
+  void finish() throws IOException {
+    generator.writeEndArray();
+    generator.writeArrayFieldStart("dictionaries");
+    for (Map<String, Integer> dictionary : dictionaries) {
+      if (null == dictionary) {
+        generator.writeNull();
+        continue;
+      }
+      generator.writeStartArray();
+      for (String value : dictionary.keySet()) {
+        generator.writeString(value);
+      }
+      generator.writeEndArray();
+    }
+    generator.writeEndArray();
+    generator.writeEndObject();
+    generator.close();
+  }
+}
@@ -0,0 +1,166 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import com.google.common.base.Strings;
+import hudson.init.Terminator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.http.Header;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.ssl.SSLContexts;
+
+/**
+ * Controller wide registry of HTTP clients used for talking to Anchore Enterprise. One pooled client is created per distinct
+ * (engine URL, account, verify SSL) combination and shared by all builds and all plugin phases, so that connections (and TLS sessions)
+ * are reused instead of being set up for every request. Clients returned by this registry are owned by the registry and must not be
+ * closed by the caller.
+ *
+ * <p>Pool sizing can be tuned with the following system properties:</p>
+ *
+ * <ul> <li><code>com.anchore.jenkins.plugins.anchore.EngineClientRegistry.maxTotal</code> - max connections per client (default 50)</li>
+ *
+ * <li><code>com.anchore.jenkins.plugins.anchore.EngineClientRegistry.maxPerRoute</code> - max connections per route (default 20)</li>
+ *
+ * <li><code>com.anchore.jenkins.plugins.anchore.EngineClientRegistry.idleTimeout</code> - seconds before an idle connection is
+ * evicted (default 60)</li> </ul>
+ */
+public final class EngineClientRegistry {
+
+  private static final Logger LOG = Logger.getLogger(EngineClientRegistry.class.getName());
+
+  private static final int MAX_TOTAL = Integer.getInteger(EngineClientRegistry.class.getName() + ".maxTotal", 50);
+  private static final int MAX_PER_ROUTE = Integer.getInteger(EngineClientRegistry.class.getName() + ".maxPerRoute", 20);
+  private static final int IDLE_TIMEOUT = Integer.getInteger(EngineClientRegistry.class.getName() + ".idleTimeout", 60);
+
+  private static final Map<Key, CloseableHttpClient> CLIENTS = new ConcurrentHashMap<>();
+
+  private EngineClientRegistry() {
+  }
+
+  /**
+   * Returns the shared client for the given endpoint, creating it on first use.
+   *
+   * @param engineurl Anchore Enterprise URL
+   * @param account Anchore Enterprise account, sent as the x-anchore-account header when set
+   * @param verify whether SSL certificates and host names are verified
+   * @return pooled http client, never to be closed by the caller
+   */
+  public static CloseableHttpClient get(String engineurl, String account, boolean verify) {
+    return CLIENTS.computeIfAbsent(new Key(engineurl, account, verify), EngineClientRegistry::create);
+  }
+
+  /**
+   * Creates a new http context carrying the anchore-enterprise credentials. Contexts hold per-execution state and must not be shared
+   * between threads, get a new one for each concurrent task
+   *
+   * @param username Anchore Enterprise user
+   * @param password Anchore Enterprise password
+   * @return http context to be used with a client returned by {@link #get(String, String, boolean)}
+   */
+  public static HttpClientContext newContext(String username, String password) {
+    CredentialsProvider credsProvider = new BasicCredentialsProvider();
+    credsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(username, password));
+    HttpClientContext context = HttpClientContext.create();
+    context.setCredentialsProvider(credsProvider);
+    return context;
+  }
+
+  /**
+   * Closes all the clients and their connection pools. Invoked when Jenkins shuts down
+   */
+  @Terminator
+  public static void shutdown() {
+    for (Map.Entry<Key, CloseableHttpClient> entry : CLIENTS.entrySet()) {
+      try {
+        entry.getValue().close();
+      } catch (IOException e) {
+        LOG.log(Level.FINE, "Failed to close http client for " + entry.getKey().engineurl, e);
+      }
+    }
+    CLIENTS.clear();
+  }
+
+  private static CloseableHttpClient create(Key key) {
+    List<Header> headers = new ArrayList<>();
+    if (!Strings.isNullOrEmpty(key.account)) {
+      headers.add(new BasicHeader("x-anchore-account", key.account));
+    }
+
+    SSLConnectionSocketFactory sslsf;
+    if (key.verify) {
+      sslsf = SSLConnectionSocketFactory.getSocketFactory();
+    } else {
+      try {
+        sslsf = new SSLConnectionSocketFactory(SSLContexts.custom().loadTrustMaterial(null, new TrustSelfSignedStrategy()).build(),
+            NoopHostnameVerifier.INSTANCE);
+      } catch (Exception e) {
+        LOG.log(Level.WARNING, "Failed to initialize SSL context for " + key.engineurl + ", falling back to default SSL settings", e);
+        sslsf = SSLConnectionSocketFactory.getSocketFactory();
+      }
+    }
+
+    Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+        .register("http", PlainConnectionSocketFactory.getSocketFactory()).register("https", sslsf).build();
+    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(socketFactories);
+    connectionManager.setMaxTotal(MAX_TOTAL);
+    connectionManager.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+    connectionManager.setValidateAfterInactivity(2000);
+
+    LOG.fine("Creating pooled http client for " + key.engineurl + ", account: " + key.account + ", verify: " + key.verify);
+    return HttpClients.custom().setConnectionManager(connectionManager).setDefaultHeaders(headers)
+        .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE).evictExpiredConnections()
+        .evictIdleConnections(IDLE_TIMEOUT, TimeUnit.SECONDS).build();
+  }
+
+  private static final class Key {
+
+    private final String engineurl;
+    private final String account;
+    private final boolean verify;
+
+    private Key(String engineurl, String account, boolean verify) {
+      this.engineurl = Strings.nullToEmpty(engineurl).replaceAll("/+$", "");
+      this.account = Strings.nullToEmpty(account);
+      this.verify = verify;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return verify == other.verify && engineurl.equals(other.engineurl) && account.equals(other.account);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(engineurl, account, verify);
+    }
+  }
+}
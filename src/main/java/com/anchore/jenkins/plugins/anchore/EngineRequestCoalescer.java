@@ -0,0 +1,184 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.CloseableHttpClient;
+
+/**
+ * Coalesces identical read requests to anchore-enterprise that are in flight at the same time (single-flight). The first caller for a
+ * {@link Key} issues the request, callers arriving while it is outstanding wait for and share its response instead of issuing their
+ * own. Nothing is retained once the request completes, see {@link EngineResponseCache} for reusing completed responses.
+ *
+ * <p>Useful when many builds scan the same images at the same moment, for instance when a monorepo triggers several jobs.</p>
+ */
+public final class EngineRequestCoalescer {
+
+  private static final Logger LOG = Logger.getLogger(EngineRequestCoalescer.class.getName());
+
+  private static final Map<Key, CompletableFuture<EngineResponse>> IN_FLIGHT = new ConcurrentHashMap<>();
+  private static final AtomicLong COALESCED = new AtomicLong();
+
+  private EngineRequestCoalescer() {
+  }
+
+  /**
+   * Issues a GET request, or joins an identical request already in flight
+   *
+   * @param httpclient client to use if the request is issued by this caller
+   * @param context http context to use if the request is issued by this caller
+   * @param key identity of the request
+   * @param url request URL
+   * @return response read completely, possibly shared with other callers
+   * @throws IOException if the request fails, callers that joined get the same failure
+   * @throws InterruptedException if interrupted while waiting for a request issued by another caller
+   */
+  public static EngineResponse get(CloseableHttpClient httpclient, HttpClientContext context, Key key, String url)
+      throws IOException, InterruptedException {
+    CompletableFuture<EngineResponse> mine = new CompletableFuture<>();
+    CompletableFuture<EngineResponse> existing = IN_FLIGHT.putIfAbsent(key, mine);
+
+    if (null != existing) {
+      COALESCED.incrementAndGet();
+      LOG.fine("Joining in flight anchore-enterprise request " + url);
+      try {
+        return existing.get();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new IOException("Shared anchore-enterprise request failed: " + url, cause);
+      }
+    }
+
+    try {
+      HttpGet httpget = new HttpGet(url);
+      httpget.addHeader("Content-Type", "application/json");
+      EngineResponse response;
+      try (CloseableHttpResponse httpResponse = httpclient.execute(httpget, context)) {
+        response = EngineResponse.of(httpResponse);
+      }
+      mine.complete(response);
+      return response;
+    } catch (IOException | RuntimeException e) {
+      mine.completeExceptionally(e);
+      throw e;
+    } finally {
+      IN_FLIGHT.remove(key, mine);
+    }
+  }
+
+  /**
+   * @return number of requests that were served by joining a request already in flight
+   */
+  public static long getCoalescedCount() {
+    return COALESCED.get();
+  }
+
+  /**
+   * Identity of a request: the anchore-enterprise endpoint, account and credentials, the kind of request and the parameters of the
+   * evaluation. The credentials are part of the identity so that a build never gets a response fetched with another user's
+   * credentials, they are kept as a hash of the user name and password
+   */
+  public static final class Key {
+
+    private final String kind;
+    private final String engineurl;
+    private final String account;
+    private final String username;
+    private final String credentials;
+    private final boolean verify;
+    private final String imageDigest;
+    private final String tag;
+    private final String policyBundleId;
+    private final String baseImageDigest;
+
+    private Key(String kind, BuildConfig config, String imageDigest, String tag, String policyBundleId, String baseImageDigest) {
+      this.kind = kind;
+      this.engineurl = Strings.nullToEmpty(config.getEngineurl()).replaceAll("/+$", "");
+      this.account = Strings.nullToEmpty(config.getEngineaccount());
+      this.username = Strings.nullToEmpty(config.getEngineuser());
+      this.credentials = Hashing.sha256()
+          .hashString(username + ":" + Strings.nullToEmpty(config.getEnginepass()), StandardCharsets.UTF_8).toString();
+      this.verify = config.getEngineverify();
+      this.imageDigest = Strings.nullToEmpty(imageDigest);
+      this.tag = Strings.nullToEmpty(tag);
+      this.policyBundleId = Strings.nullToEmpty(policyBundleId);
+      this.baseImageDigest = Strings.nullToEmpty(baseImageDigest);
+    }
+
+    /**
+     * @return key for GET /system/feeds
+     */
+    public static Key feeds(BuildConfig config) {
+      return new Key("feeds", config, null, null, null, null);
+    }
+
+    /**
+     * @return key for GET /images/{digest}/ancestors
+     */
+    public static Key ancestors(BuildConfig config, String imageDigest) {
+      return new Key("ancestors", config, imageDigest, null, null, null);
+    }
+
+    /**
+     * @return key for GET /images/{digest}/vuln/all
+     */
+    public static Key vulnerabilities(BuildConfig config, String imageDigest, String baseImageDigest) {
+      return new Key("vulnerabilities", config, imageDigest, null, null, baseImageDigest);
+    }
+
+    /**
+     * @return key for GET /images/{digest}/check
+     */
+    public static Key check(BuildConfig config, String imageDigest, String tag, String baseImageDigest) {
+      return new Key("check", config, imageDigest, tag, config.getPolicyBundleId(), baseImageDigest);
+    }
+
+    String getEngineurl() {
+      return engineurl;
+    }
+
+    String getImageDigest() {
+      return imageDigest;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return kind.equals(other.kind) && verify == other.verify && engineurl.equals(other.engineurl) && account.equals(other.account)
+          && username.equals(other.username) && credentials.equals(other.credentials) && imageDigest.equals(other.imageDigest) && tag
+          .equals(other.tag) && policyBundleId.equals(other.policyBundleId) && baseImageDigest.equals(other.baseImageDigest);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(kind, engineurl, account, username, credentials, verify, imageDigest, tag, policyBundleId, baseImageDigest);
+    }
+
+    @Override
+    public String toString() {
+      // Leaves out the credentials hash
+      return kind + " " + engineurl + " " + account + " " + username + " " + verify + " " + imageDigest + " " + tag + " "
+          + policyBundleId + " " + baseImageDigest;
+    }
+  }
+}
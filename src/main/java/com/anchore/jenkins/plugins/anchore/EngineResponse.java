@@ -0,0 +1,131 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import com.google.common.io.ByteStreams;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.apache.commons.io.FileCleaningTracker;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+
+/**
+ * Response from anchore-enterprise, read completely before it is handed out. Small bodies are kept in memory, larger ones such as
+ * policy evaluations are spooled to a temporary file on the controller, which is deleted once the response is no longer referenced.
+ * Immutable, so a single response can be handed to several builds.
+ *
+ * <p>Bodies up to <code>com.anchore.jenkins.plugins.anchore.EngineResponse.memoryThreshold</code> bytes (system property, default
+ * 65536) are kept in memory.</p>
+ */
+public final class EngineResponse {
+
+  private static final int MEMORY_THRESHOLD = Integer.getInteger(EngineResponse.class.getName() + ".memoryThreshold", 64 * 1024);
+  private static final FileCleaningTracker SPOOL_CLEANER = new FileCleaningTracker();
+
+  private final int statusCode;
+  private final String statusLine;
+  private final byte[] body; // null if spooled
+  private final File bodyFile; // null if kept in memory
+  private final long bodyLength;
+  private final long retryAfterMillis;
+
+  private EngineResponse(int statusCode, String statusLine, byte[] body, File bodyFile, long retryAfterMillis) {
+    this.statusCode = statusCode;
+    this.statusLine = statusLine;
+    this.body = body;
+    this.bodyFile = bodyFile;
+    this.bodyLength = null != body ? body.length : bodyFile.length();
+    this.retryAfterMillis = retryAfterMillis;
+  }
+
+  /**
+   * Reads the response completely, spooling the body to a temporary file if it is large. Does not close the response
+   *
+   * @param response http response
+   * @return response that no longer depends on the connection
+   * @throws IOException if the response body cannot be read or spooled
+   */
+  public static EngineResponse of(CloseableHttpResponse response) throws IOException {
+    byte[] body = new byte[0];
+    File bodyFile = null;
+    HttpEntity entity = response.getEntity();
+    InputStream content = null != entity ? entity.getContent() : null;
+    if (null != content) {
+      try (InputStream in = content) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        if (ByteStreams.copy(ByteStreams.limit(in, MEMORY_THRESHOLD + 1L), buffer) <= MEMORY_THRESHOLD) {
+          body = buffer.toByteArray();
+        } else {
+          body = null;
+          bodyFile = spool(buffer, in);
+        }
+      }
+    }
+
+    EngineResponse engineResponse = new EngineResponse(response.getStatusLine().getStatusCode(),
+        String.valueOf(response.getStatusLine()), body, bodyFile, PollSchedule.getRetryAfterMillis(response));
+    if (null != bodyFile) {
+      SPOOL_CLEANER.track(bodyFile, engineResponse);
+    }
+    return engineResponse;
+  }
+
+  private static File spool(ByteArrayOutputStream head, InputStream rest) throws IOException {
+    File file = File.createTempFile("anchore-response-", ".json");
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+      head.writeTo(out);
+      ByteStreams.copy(rest, out);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(file.toPath());
+      throw e;
+    }
+    return file;
+  }
+
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  public String getStatusLine() {
+    return statusLine;
+  }
+
+  /**
+   * Reads the body into a string, meant for small bodies such as error messages. Use {@link #openBody()} to process large ones
+   *
+   * @return body of the response
+   * @throws IOException if the spooled body cannot be read
+   */
+  public String getBody() throws IOException {
+    return new String(null != body ? body : Files.readAllBytes(bodyFile.toPath()), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return stream over the body of the response, to be closed by the caller. May be called any number of times
+   * @throws IOException if the spooled body cannot be opened
+   */
+  public InputStream openBody() throws IOException {
+    return null != body ? new ByteArrayInputStream(body) : new FileInputStream(bodyFile);
+  }
+
+  /**
+   * @return size of the body in bytes, in memory or on disk
+   */
+  public long getBodyLength() {
+    return bodyLength;
+  }
+
+  /**
+   * @return wait time requested by anchore-enterprise, see {@link PollSchedule#getRetryAfterMillis(org.apache.http.HttpResponse)}
+   */
+  public long getRetryAfterMillis() {
+    return retryAfterMillis;
+  }
+}
@@ -0,0 +1,197 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import net.sf.json.JSONSerializer;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.CloseableHttpClient;
+
+/**
+ * Controller wide cache of successful ancestors, policy check and vulnerability listing responses from anchore-enterprise, used by
+ * jobs that opt in with the cacheResults option. Large responses are held as spooled files, see {@link EngineResponse}, so the cache
+ * costs disk space rather than heap. Entries are keyed by the request (see {@link EngineRequestCoalescer.Key}), which includes the
+ * credentials it was made with, and the last vulnerability feed sync reported by anchore-enterprise, so a build is only ever served
+ * responses fetched with its own credentials and a feed sync implicitly invalidates all the results computed before it. Entries are
+ * also evicted by age and by the total size of the response bodies, a vulnerability listing can take tens of MB. The spooled file of
+ * an evicted response is deleted once no build uses the response any more.
+ *
+ * <p>Tunable with the following system properties:</p>
+ *
+ * <ul> <li><code>com.anchore.jenkins.plugins.anchore.EngineResponseCache.maxMegabytes</code> - max total size of the cached response
+ * bodies in MB (default 256)</li>
+ *
+ * <li><code>com.anchore.jenkins.plugins.anchore.EngineResponseCache.ttl</code> - seconds a response is reused for (default 600)</li>
+ *
+ * <li><code>com.anchore.jenkins.plugins.anchore.EngineResponseCache.feedStateTtl</code> - seconds the feed sync state of an
+ * anchore-enterprise endpoint is reused for (default 60)</li> </ul>
+ */
+public final class EngineResponseCache {
+
+  private static final Logger LOG = Logger.getLogger(EngineResponseCache.class.getName());
+
+  private static final long MAX_MEGABYTES = Long.getLong(EngineResponseCache.class.getName() + ".maxMegabytes", 256);
+  private static final long TTL = Long.getLong(EngineResponseCache.class.getName() + ".ttl", 600);
+  private static final long FEED_STATE_TTL = Long.getLong(EngineResponseCache.class.getName() + ".feedStateTtl", 60);
+
+  // Weighed in KB, so that the weight of a single response fits an int
+  private static final Cache<Key, EngineResponse> RESPONSES = CacheBuilder.newBuilder().maximumWeight(MAX_MEGABYTES * 1024)
+      .weigher((Key key, EngineResponse response) -> (int) Math.min(Integer.MAX_VALUE, 1 + response.getBodyLength() / 1024))
+      .expireAfterWrite(TTL, TimeUnit.SECONDS).recordStats().build();
+  private static final Cache<EngineRequestCoalescer.Key, String> FEED_STATES = CacheBuilder.newBuilder().maximumSize(100)
+      .expireAfterWrite(FEED_STATE_TTL, TimeUnit.SECONDS).build();
+
+  private EngineResponseCache() {
+  }
+
+  /**
+   * Returns a cached response for the request, or issues it (joining an identical request in flight if any) and caches the response
+   * if it is successful. Bypasses the cache if the feed sync state of anchore-enterprise cannot be determined
+   *
+   * @param httpclient client to use if the request is issued
+   * @param context http context to use if the request is issued
+   * @param config build configuration
+   * @param requestKey identity of the request
+   * @param url request URL
+   * @return response
+   * @throws IOException if the request fails
+   * @throws InterruptedException if interrupted while waiting for a shared request
+   */
+  public static EngineResponse get(CloseableHttpClient httpclient, HttpClientContext context, BuildConfig config,
+      EngineRequestCoalescer.Key requestKey, String url) throws IOException, InterruptedException {
+    String feedState = getFeedState(httpclient, context, config);
+    if (null == feedState) {
+      return EngineRequestCoalescer.get(httpclient, context, requestKey, url);
+    }
+
+    Key key = new Key(requestKey, feedState);
+    EngineResponse response = RESPONSES.getIfPresent(key);
+    if (null == response) {
+      response = EngineRequestCoalescer.get(httpclient, context, requestKey, url);
+      if (response.getStatusCode() == 200) {
+        RESPONSES.put(key, response);
+      }
+    }
+    return response;
+  }
+
+  /**
+   * Drops all cached responses for an image, for instance because it is being analyzed again
+   *
+   * @param engineurl anchore-enterprise URL
+   * @param imageDigest image digest
+   */
+  public static void invalidate(String engineurl, String imageDigest) {
+    String url = Strings.nullToEmpty(engineurl).replaceAll("/+$", "");
+    RESPONSES.asMap().keySet()
+        .removeIf(k -> k.requestKey.getEngineurl().equals(url) && k.requestKey.getImageDigest().equals(imageDigest));
+  }
+
+  /**
+   * Drops all cached responses and feed sync states
+   */
+  public static void invalidateAll() {
+    RESPONSES.invalidateAll();
+    FEED_STATES.invalidateAll();
+  }
+
+  /**
+   * @return hit, miss and eviction counters of the response cache
+   */
+  public static CacheStats getStats() {
+    return RESPONSES.stats();
+  }
+
+  /**
+   * Fetches the most recent vulnerability feed sync timestamp from anchore-enterprise (GET /system/feeds), cached briefly per endpoint
+   *
+   * @return feed sync state or null if it could not be determined
+   */
+  private static String getFeedState(CloseableHttpClient httpclient, HttpClientContext context, BuildConfig config) {
+    String engineurl = config.getEngineurl().replaceAll("/+$", "");
+    EngineRequestCoalescer.Key feedsKey = EngineRequestCoalescer.Key.feeds(config);
+    String feedState = FEED_STATES.getIfPresent(feedsKey);
+    if (null != feedState) {
+      return feedState;
+    }
+
+    String feedsURL = engineurl + "/system/feeds";
+    try {
+      EngineResponse response = EngineRequestCoalescer.get(httpclient, context, feedsKey, feedsURL);
+      if (response.getStatusCode() != 200) {
+        LOG.fine("anchore-enterprise get feeds failed. URL: " + feedsURL + ", status: " + response.getStatusLine());
+        return null;
+      }
+
+      // Timestamps are ISO-8601 strings in UTC, the latest one sorts last
+      String latest = null;
+      JSONArray feeds = (JSONArray) JSONSerializer.toJSON(response.getBody());
+      for (int i = 0; i < feeds.size(); i++) {
+        JSONObject feed = feeds.getJSONObject(i);
+        latest = max(latest, feed.optString("last_full_sync", null));
+        JSONArray groups = feed.optJSONArray("groups");
+        if (null != groups) {
+          for (int j = 0; j < groups.size(); j++) {
+            latest = max(latest, groups.getJSONObject(j).optString("last_sync", null));
+          }
+        }
+      }
+      if (null != latest) {
+        FEED_STATES.put(feedsKey, latest);
+      }
+      return latest;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (Exception e) {
+      LOG.log(Level.FINE, "Failed to determine feed sync state of " + engineurl + ", not using cached results", e);
+      return null;
+    }
+  }
+
+  private static String max(String a, String b) {
+    if (Strings.isNullOrEmpty(b) || "null".equals(b)) {
+      return a;
+    }
+    return null == a || b.compareTo(a) > 0 ? b : a;
+  }
+
+  /**
+   * Identity of a cached response: the credential aware identity of the request and the feed sync state it was computed at
+   */
+  private static final class Key {
+
+    private final EngineRequestCoalescer.Key requestKey;
+    private final String feedState;
+
+    private Key(EngineRequestCoalescer.Key requestKey, String feedState) {
+      this.requestKey = requestKey;
+      this.feedState = feedState;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return requestKey.equals(other.requestKey) && feedState.equals(other.feedState);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(requestKey, feedState);
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.sf.json.JSONObject;
+
+/**
+ * Writes the gates report (anchore_gates.json) incrementally as the policy evaluation of each image completes, in the order of the
+ * image list. The gate result of an image is written out as soon as the images before it are done. Results of images that complete
+ * ahead of their turn wait in a temporary file on the controller, so the findings of an image are not retained once it is added. Only
+ * the summary row of each image and the total action counts are kept.
+ */
+final class GatesReportWriter implements Closeable {
+
+  private static final Logger LOG = Logger.getLogger(GatesReportWriter.class.getName());
+
+  private final Writer out;
+  private final File[] pending;
+  private final JSONObject[] summaryRows;
+  private final ActionCounts totals = new ActionCounts();
+  private int next;
+
+  /**
+   * @param destination stream of the gates report file, closed by this writer
+   * @param imageCount number of images that will be added
+   */
+  GatesReportWriter(OutputStream destination, int imageCount) throws IOException {
+    this.out = new BufferedWriter(new OutputStreamWriter(destination, StandardCharsets.UTF_8));
+    this.pending = new File[imageCount];
+    this.summaryRows = new JSONObject[imageCount];
+    out.write('[');
+  }
+
+  /**
+   * Adds the policy evaluation of an image. Safe to invoke concurrently
+   *
+   * @param index position of the image in the image list, starting at 0
+   * @param evaluation evaluation result, not retained
+   * @throws IOException if the gate result cannot be written
+   */
+  synchronized void add(int index, ImageEvaluation evaluation) throws IOException {
+    summaryRows[index] = evaluation.toSummaryRow();
+    totals.add(evaluation.getCounts());
+
+    if (index != next) {
+      File fragment = File.createTempFile("anchore-gates-", ".json");
+      pending[index] = fragment;
+      try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fragment), StandardCharsets.UTF_8))) {
+        evaluation.writeGateResult(writer);
+      }
+      return;
+    }
+
+    separate();
+    evaluation.writeGateResult(out);
+    next++;
+
+    // Images after this one that are already done
+    while (next < pending.length && null != pending[next]) {
+      File fragment = pending[next];
+      separate();
+      try (Reader reader = new InputStreamReader(new FileInputStream(fragment), StandardCharsets.UTF_8)) {
+        char[] buffer = new char[8192];
+        int n;
+        while ((n = reader.read(buffer)) != -1) {
+          out.write(buffer, 0, n);
+        }
+      }
+      Files.delete(fragment.toPath());
+      pending[next++] = null;
+    }
+    out.flush();
+  }
+
+  /**
+   * Completes the report once all the images are added
+   *
+   * @throws IOException if the report cannot be written or images are missing
+   */
+  synchronized void finish() throws IOException {
+    if (next != pending.length) {
+      throw new IOException("Policy evaluation of " + (pending.length - next) + " image(s) was not added to the gates report");
+    }
+    out.write(']');
+    out.close();
+  }
+
+  /**
+   * @return summary rows of the images in the order of the image list, null for images that were not added
+   */
+  synchronized List<JSONObject> getSummaryRows() {
+    return Arrays.asList(summaryRows.clone());
+  }
+
+  /**
+   * @return action counts of all the images added
+   */
+  synchronized ActionCounts getTotals() {
+    ActionCounts copy = new ActionCounts();
+    copy.add(totals);
+    return copy;
+  }
+
+  /**
+   * Releases the report file and removes temporary files, does not complete the report
+   */
+  @Override
+  public synchronized void close() {
+    try {
+      out.close();
+    } catch (IOException e) {
+      LOG.log(Level.FINE, "Failed to close gates report", e);
+    }
+    for (int i = 0; i < pending.length; i++) {
+      if (null != pending[i]) {
+        try {
+          Files.deleteIfExists(pending[i].toPath());
+        } catch (IOException e) {
+          LOG.log(Level.FINE, "Failed to delete " + pending[i], e);
+        }
+        pending[i] = null;
+      }
+    }
+  }
+
+  private void separate() throws IOException {
+    if (next > 0) {
+      out.write(',');
+    }
+  }
+}
@@ -0,0 +1,322 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import com.google.common.base.Strings;
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.init.Terminator;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.sf.json.JSONObject;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Controller wide service that waits for anchore-enterprise to finish analyzing images. Builds register the digests they are waiting
+ * on and get back a future that completes with the image record once analysis is done. Every distinct digest (per anchore-enterprise
+ * endpoint and user) is polled once per tick regardless of how many builds are waiting on it, and all the waiters complete together.
+ * Polling is done by a small shared thread pool so that waiting builds do not hold a thread each.
+ *
+ * <p>Each waiter brings its own {@link PollSchedule} and keeps its own next poll time. A digest is polled as often as its most
+ * impatient waiter asks for, but a poll only counts as an attempt for the waiters that were due for it, so a patient waiter does not
+ * use up its attempts at the pace of an impatient one. A waiter whose schedule runs out fails with a timeout without affecting the
+ * others.</p>
+ *
+ * <p>Tunable with the following system properties:</p>
+ *
+ * <ul> <li><code>com.anchore.jenkins.plugins.anchore.ImageAnalysisPoller.threads</code> - polling threads (default 2)</li>
+ *
+ * <li><code>com.anchore.jenkins.plugins.anchore.ImageAnalysisPoller.tick</code> - milliseconds between checks for digests that are
+ * due for polling (default 500)</li> </ul>
+ */
+@Extension
+public class ImageAnalysisPoller {
+
+  private static final Logger LOG = Logger.getLogger(ImageAnalysisPoller.class.getName());
+
+  private static final int THREADS = Integer.getInteger(ImageAnalysisPoller.class.getName() + ".threads", 2);
+  private static final long TICK_MILLIS = Long.getLong(ImageAnalysisPoller.class.getName() + ".tick", 500);
+
+  private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+  private ScheduledExecutorService executor;
+
+  /**
+   * @return the singleton instance
+   */
+  public static ImageAnalysisPoller get() {
+    return ExtensionList.lookupSingleton(ImageAnalysisPoller.class);
+  }
+
+  /**
+   * Registers interest in the analysis of an image
+   *
+   * @param config build configuration, supplies the anchore-enterprise endpoint and credentials
+   * @param tag image tag, used for logging only
+   * @param imageDigest digest of the image to wait for
+   * @param schedule poll schedule of the waiter, {@link PollSchedule#attempt()} is invoked for every poll of the digest the waiter
+   * was due for. Must not be used by the caller until the future completes
+   * @param console build console logger
+   * @return future completing with the image record returned by anchore-enterprise once the image is analyzed. Completes exceptionally
+   * with an {@link AbortException} if analysis fails or the schedule runs out. Cancel the future to stop waiting
+   */
+  public CompletableFuture<JSONObject> awaitAnalysis(BuildConfig config, String tag, String imageDigest, PollSchedule schedule,
+      ConsoleLog console) {
+    Waiter waiter = new Waiter(tag, schedule, console, System.nanoTime());
+    Key key = new Key(config.getEngineurl(), config.getEngineaccount(), config.getEngineuser(), config.getEngineverify(), imageDigest);
+
+    entries.compute(key, (k, entry) -> {
+      if (null == entry) {
+        entry = new Entry(k, config.getEnginepass());
+      } else {
+        // Join the next poll of the digest rather than forcing an early one on the existing waiters
+        waiter.dueAt = entry.nextPollAt;
+      }
+      entry.waiters.add(waiter);
+      return entry;
+    });
+    // Forget about waiters that give up
+    waiter.future.whenComplete((result, t) -> {
+      if (waiter.future.isCancelled()) {
+        entries.computeIfPresent(key, (k, entry) -> {
+          entry.waiters.remove(waiter);
+          return entry.waiters.isEmpty() ? null : entry;
+        });
+      }
+    });
+
+    ensureStarted();
+    return waiter.future;
+  }
+
+  /**
+   * Shuts down the polling threads. Invoked when Jenkins shuts down
+   */
+  @Terminator
+  public static void shutdown() {
+    for (ImageAnalysisPoller poller : ExtensionList.lookup(ImageAnalysisPoller.class)) {
+      synchronized (poller) {
+        if (null != poller.executor) {
+          poller.executor.shutdownNow();
+          poller.executor = null;
+        }
+      }
+    }
+  }
+
+  private synchronized void ensureStarted() {
+    if (null == executor) {
+      executor = Executors
+          .newScheduledThreadPool(THREADS, new NamingThreadFactory(new DaemonThreadFactory(), "AnchoreImageAnalysisPoller"));
+      executor.scheduleWithFixedDelay(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void tick() {
+    try {
+      long now = System.nanoTime();
+      for (Entry entry : entries.values()) {
+        if (!entry.polling && now - entry.nextPollAt >= 0) {
+          entry.polling = true;
+          executor.execute(() -> poll(entry));
+        }
+      }
+    } catch (Exception e) {
+      // Never let an exception cancel the periodic task
+      LOG.log(Level.WARNING, "Failed to schedule anchore-enterprise image analysis polls", e);
+    }
+  }
+
+  private void poll(Entry entry) {
+    Key key = entry.key;
+    List<Waiter> waiters = snapshot(key);
+    if (waiters.isEmpty()) {
+      entry.polling = false;
+      return;
+    }
+    // Only the waiters whose own interval has passed are charged an attempt for this poll
+    long startedAt = System.nanoTime();
+    List<Waiter> due = new ArrayList<>();
+    for (Waiter waiter : waiters) {
+      if (startedAt - waiter.dueAt >= 0) {
+        waiter.schedule.attempt();
+        due.add(waiter);
+      }
+    }
+
+    JSONObject image = null;
+    AbortException failure = null;
+    long retryAfterMillis = -1;
+    String imageURL = key.engineurl + "/images/" + key.imageDigest;
+
+    CloseableHttpClient httpclient = EngineClientRegistry.get(key.engineurl, key.account, key.verify);
+    HttpGet httpgetCheckAnalysis = new HttpGet(imageURL);
+    httpgetCheckAnalysis.addHeader("Content-Type", "application/json");
+    try (CloseableHttpResponse response = httpclient
+        .execute(httpgetCheckAnalysis, EngineClientRegistry.newContext(key.username, entry.password))) {
+      String responseBody = EntityUtils.toString(response.getEntity());
+      if (response.getStatusLine().getStatusCode() != 200) {
+        retryAfterMillis = PollSchedule.getRetryAfterMillis(response);
+        log(waiters,
+            "anchore-enterprise get analysis status failed. URL: " + imageURL + ", status: " + response.getStatusLine() + ", error: "
+                + responseBody);
+      } else {
+        JSONObject imageResponse = JSONObject.fromObject(responseBody);
+        String imageAnalysisStatus = imageResponse.getString("analysis_status");
+        if (imageAnalysisStatus.equals("analysis_failed")) {
+          failure = new AbortException("Analysis failed for " + key.imageDigest);
+        } else if (imageAnalysisStatus.equals("analyzed")) {
+          image = imageResponse;
+        } else {
+          log(waiters, "anchore-enterprise get analysis status for " + key.imageDigest + ": " + imageAnalysisStatus);
+        }
+      }
+    } catch (Exception e) {
+      log(waiters, "Failed to check analysis status of " + key.imageDigest + ", will retry. Error: " + e);
+    }
+
+    // Complete the waiters outside of the map lock, dependent actions may run on this thread
+    List<Waiter> done = new ArrayList<>();
+    List<Waiter> timedOut = new ArrayList<>();
+    boolean finished = null != image || null != failure;
+    long now = System.nanoTime();
+    for (Waiter waiter : waiters) {
+      if (finished) {
+        done.add(waiter);
+      } else if (!waiter.schedule.hasNext()) {
+        timedOut.add(waiter);
+      } else if (due.contains(waiter)) {
+        waiter.dueAt = now + TimeUnit.MILLISECONDS.toNanos(waiter.schedule.nextDelayMillis(retryAfterMillis));
+      } else if (retryAfterMillis >= 0) {
+        // The server asked to back off, the waiters that were not due honour that too
+        waiter.dueAt = Math.max(waiter.dueAt, now + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis));
+      }
+    }
+    entries.computeIfPresent(key, (k, e) -> {
+      e.waiters.removeAll(done);
+      e.waiters.removeAll(timedOut);
+      // Poll again when the first of the remaining waiters is due, including the ones that joined meanwhile
+      Long nextPollAt = null;
+      for (Waiter waiter : e.waiters) {
+        if (null == nextPollAt || waiter.dueAt - nextPollAt < 0) {
+          nextPollAt = waiter.dueAt;
+        }
+      }
+      e.nextPollAt = null != nextPollAt ? nextPollAt : now;
+      e.polling = false;
+      return e.waiters.isEmpty() ? null : e;
+    });
+
+    for (Waiter waiter : done) {
+      if (null != failure) {
+        waiter.console.logWarn("anchore-enterprise reporting analysis failed for " + key.imageDigest);
+        waiter.future.completeExceptionally(failure);
+      } else {
+        waiter.future.complete(image);
+      }
+    }
+    for (Waiter waiter : timedOut) {
+      waiter.console.logWarn("Exhausted all attempts polling anchore-enterprise. Analysis is incomplete for " + key.imageDigest);
+      waiter.future.completeExceptionally(new AbortException(
+          "Timed out waiting for anchore-enterprise analysis of " + waiter.tag + " to complete (" + waiter.schedule.getExhaustedHint()
+              + "). Check above logs for errors from anchore-enterprise"));
+    }
+  }
+
+  private List<Waiter> snapshot(Key key) {
+    List<Waiter> waiters = new ArrayList<>();
+    entries.computeIfPresent(key, (k, e) -> {
+      waiters.addAll(e.waiters);
+      return e;
+    });
+    return waiters;
+  }
+
+  private static void log(List<Waiter> waiters, String msg) {
+    for (Waiter waiter : waiters) {
+      waiter.console.logDebug(msg);
+    }
+  }
+
+  private static final class Waiter {
+
+    private final String tag;
+    private final PollSchedule schedule;
+    private final ConsoleLog console;
+    private final CompletableFuture<JSONObject> future = new CompletableFuture<>();
+    private volatile long dueAt; // System.nanoTime() based time of the next poll this waiter asks for
+
+    private Waiter(String tag, PollSchedule schedule, ConsoleLog console, long dueAt) {
+      this.tag = tag;
+      this.schedule = schedule;
+      this.console = console;
+      this.dueAt = dueAt;
+    }
+  }
+
+  /**
+   * A digest being polled and the builds waiting on it. Mutated only while holding the map lock for its key, except for the polling
+   * flag which is only touched by the tick and the poll it starts, and the due times of the waiters which are only updated by the
+   * poll once they joined
+   */
+  private static final class Entry {
+
+    private final Key key;
+    private final String password;
+    private final List<Waiter> waiters = new ArrayList<>();
+    private volatile long nextPollAt = System.nanoTime();
+    private volatile boolean polling;
+
+    private Entry(Key key, String password) {
+      this.key = key;
+      this.password = password;
+    }
+  }
+
+  private static final class Key {
+
+    private final String engineurl;
+    private final String account;
+    private final String username;
+    private final boolean verify;
+    private final String imageDigest;
+
+    private Key(String engineurl, String account, String username, boolean verify, String imageDigest) {
+      this.engineurl = Strings.nullToEmpty(engineurl).replaceAll("/+$", "");
+      this.account = Strings.nullToEmpty(account);
+      this.username = Strings.nullToEmpty(username);
+      this.verify = verify;
+      this.imageDigest = imageDigest;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return verify == other.verify && engineurl.equals(other.engineurl) && account.equals(other.account) && username
+          .equals(other.username) && imageDigest.equals(other.imageDigest);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(engineurl, account, username, verify, imageDigest);
+    }
+  }
+}
@@ -0,0 +1,211 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import com.anchore.jenkins.plugins.anchore.Util.GATE_SUMMARY_COLUMN;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import net.sf.json.JSONObject;
+import net.sf.json.util.JSONUtils;
+
+/**
+ * Policy evaluation result of a single image, read once from the anchore-enterprise response by {@link PolicyEvaluationReader} and
+ * shared by the gates report, the summary table and the build action. The findings are not held in memory but in a
+ * {@link PolicyFindingSpool}, call {@link #discard()} once the reports are written.
+ */
+public final class ImageEvaluation {
+
+  private final String imageDigest;
+  private final String evaluatedTag;
+  private final String repoTag;
+  private final String finalAction;
+  private final String failureDetails;
+  private final boolean passed;
+  private final boolean failureInheritedFromBase;
+  private final int excludedCount;
+  private final PolicyFindingSpool findings; // null if there are none
+  private final ActionCounts counts;
+
+  private ImageEvaluation(String imageDigest, String evaluatedTag, String repoTag, String finalAction, String failureDetails,
+      boolean passed, boolean failureInheritedFromBase, int excludedCount, PolicyFindingSpool findings, ActionCounts counts) {
+    this.imageDigest = imageDigest;
+    this.evaluatedTag = evaluatedTag;
+    this.repoTag = repoTag;
+    this.finalAction = finalAction;
+    this.failureDetails = failureDetails;
+    this.passed = passed;
+    this.failureInheritedFromBase = failureInheritedFromBase;
+    this.excludedCount = excludedCount;
+    this.findings = findings;
+    this.counts = counts;
+  }
+
+  /**
+   * Creates the result of the first evaluation of a policy evaluation response, see {@link PolicyEvaluationReader}
+   *
+   * @param imageDigest image digest
+   * @param evaluatedTag evaluated_tag of the response
+   * @param finalAction final_action of the evaluation
+   * @param finalActionReason final_action_reason of the evaluation
+   * @param status status of the evaluation
+   * @param findings findings that were kept, null if there are none
+   * @param counts action counts of the findings that were kept
+   * @param excludedCount number of findings dropped because they are inherited from the base image
+   * @param excludeFromBaseImage whether findings inherited from the base image were dropped
+   * @return evaluation result, with the evaluated tag as repo tag
+   */
+  static ImageEvaluation of(String imageDigest, String evaluatedTag, String finalAction, String finalActionReason, String status,
+      PolicyFindingSpool findings, ActionCounts counts, int excludedCount, boolean excludeFromBaseImage) {
+    String failureDetails = "";
+    if (finalAction.equals("stop")) {
+      if (finalActionReason.equals("policy_evaluation")) {
+        failureDetails = "Policy evaluation failed";
+      } else {
+        // Catch all for other stop actions
+        failureDetails = "Failed due to " + finalActionReason;
+      }
+    }
+
+    // Check for case where all findings are inherited from base image
+    boolean failureInheritedFromBase = excludeFromBaseImage && null == findings && finalAction.equals("stop")
+        && finalActionReason.equals("policy_evaluation");
+    if (failureInheritedFromBase) {
+      failureDetails = "Failure inherited from base image";
+    }
+
+    return new ImageEvaluation(imageDigest, evaluatedTag, evaluatedTag, finalAction, failureDetails, status.equals("pass"),
+        failureInheritedFromBase, excludedCount, findings, counts);
+  }
+
+  /**
+   * @param repoTag repo tag to show in the reports, for instance a link to the image in the Anchore UI followed by the tag
+   * @return copy of this result with the given repo tag
+   */
+  public ImageEvaluation withRepoTag(String repoTag) {
+    return new ImageEvaluation(imageDigest, evaluatedTag, repoTag, finalAction, failureDetails, passed, failureInheritedFromBase,
+        excludedCount, findings, counts);
+  }
+
+  public String getImageDigest() {
+    return imageDigest;
+  }
+
+  /**
+   * @return tag the policy was evaluated against, as reported by anchore-enterprise
+   */
+  public String getEvaluatedTag() {
+    return evaluatedTag;
+  }
+
+  public String getRepoTag() {
+    return repoTag;
+  }
+
+  /**
+   * @return final action of the evaluation: stop, warn or go
+   */
+  public String getFinalAction() {
+    return finalAction;
+  }
+
+  public String getFailureDetails() {
+    return failureDetails;
+  }
+
+  /**
+   * @return true if the evaluation status is pass
+   */
+  public boolean isPassed() {
+    return passed;
+  }
+
+  /**
+   * @return true if the evaluation failed only because of findings inherited from the base image, which were excluded
+   */
+  public boolean isFailureInheritedFromBase() {
+    return failureInheritedFromBase;
+  }
+
+  /**
+   * @return number of findings excluded because they are inherited from the base image
+   */
+  public int getExcludedCount() {
+    return excludedCount;
+  }
+
+  public ActionCounts getCounts() {
+    return counts;
+  }
+
+  /**
+   * Writes the gate result of this image as a JSON object, one element of the gates report
+   *
+   * @param writer destination
+   * @throws IOException if writing fails
+   */
+  public void writeGateResult(Writer writer) throws IOException {
+    writer.write("{\"image_digest\":");
+    writer.write(JSONUtils.quote(imageDigest));
+    writer.write(",\"repo_tag\":");
+    writer.write(JSONUtils.quote(repoTag));
+    writer.write(",\"final_action\":");
+    writer.write(JSONUtils.quote(finalAction));
+    writer.write(",\"failure_details\":");
+    writer.write(JSONUtils.quote(failureDetails));
+    writer.write(",\"gate_results\":[");
+    if (null != findings) {
+      findings.writeFindings(writer);
+    }
+    writer.write("]}");
+  }
+
+  /**
+   * @return sortable columns of the policy evaluation report table: image ID, repo tag, gate, trigger and gate action
+   */
+  static LinkedHashMap<Integer, Comparator<String>> tableSortColumns() {
+    LinkedHashMap<Integer, Comparator<String>> columns = new LinkedHashMap<>();
+    columns.put(0, String.CASE_INSENSITIVE_ORDER);
+    columns.put(1, String.CASE_INSENSITIVE_ORDER);
+    columns.put(3, String.CASE_INSENSITIVE_ORDER);
+    columns.put(4, String.CASE_INSENSITIVE_ORDER);
+    columns.put(6, ReportTableWriter.rankOrder("stop", "warn", "go"));
+    return columns;
+  }
+
+  /**
+   * Adds a row per finding to the policy evaluation report table
+   *
+   * @param table destination
+   * @param index position of the image in the image list, starting at 0
+   * @throws IOException if the rows cannot be written
+   */
+  void writeTableRows(ReportTableWriter table, int index) throws IOException {
+    if (null != findings) {
+      findings.writeTableRows(table, index, imageDigest.replace("sha256:", ""), repoTag);
+    }
+  }
+
+  /**
+   * Removes the findings from the controller once the reports are written. Copies made with {@link #withRepoTag(String)} share the
+   * findings
+   */
+  void discard() {
+    if (null != findings) {
+      findings.delete();
+    }
+  }
+
+  /**
+   * @return row of the policy evaluation summary table
+   */
+  public JSONObject toSummaryRow() {
+    JSONObject summaryRow = new JSONObject();
+    summaryRow.put(GATE_SUMMARY_COLUMN.Repo_Tag.toString(), repoTag);
+    summaryRow.put(GATE_SUMMARY_COLUMN.Stop_Actions.toString(), counts.getStop());
+    summaryRow.put(GATE_SUMMARY_COLUMN.Warn_Actions.toString(), counts.getWarn());
+    summaryRow.put(GATE_SUMMARY_COLUMN.Go_Actions.toString(), counts.getGo());
+    summaryRow.put(GATE_SUMMARY_COLUMN.Final_Action.toString(), finalAction);
+    summaryRow.put(GATE_SUMMARY_COLUMN.Stop_Action_Details.toString(), failureDetails);
+    return summaryRow;
+  }
+}
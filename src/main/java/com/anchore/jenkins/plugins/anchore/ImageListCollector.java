@@ -0,0 +1,110 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import hudson.AbortException;
+import hudson.remoting.VirtualChannel;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * Reads the image list and the Dockerfiles it references where the workspace is, in a single remoting call. The image list holds
+ * one image per line, a tag or digest optionally followed by the path of its Dockerfile, relative to the workspace or absolute.
+ * Dockerfiles are read on the agent and returned Base64 encoded, so a build with many images on a distant agent costs one round trip
+ * rather than one per file.
+ *
+ * <p>Dockerfiles must be inside the workspace once symbolic links and <code>..</code> are resolved, so that an image list cannot
+ * make the agent send arbitrary files to anchore-enterprise. Setting the
+ * <code>com.anchore.jenkins.plugins.anchore.ImageListCollector.allowOutsideWorkspace</code> system property to true on the
+ * controller restores reading Dockerfiles from anywhere on the agent.</p>
+ */
+final class ImageListCollector extends MasterToSlaveFileCallable<LinkedHashMap<String, String>> {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final boolean ALLOW_OUTSIDE_WORKSPACE =
+      Boolean.getBoolean(ImageListCollector.class.getName() + ".allowOutsideWorkspace");
+
+  private final String imageListFileName;
+  private final boolean allowOutsideWorkspace; // read on the controller
+
+  /**
+   * @param imageListFileName path of the image list file, relative to the workspace
+   */
+  ImageListCollector(String imageListFileName) {
+    this.imageListFileName = imageListFileName;
+    this.allowOutsideWorkspace = ALLOW_OUTSIDE_WORKSPACE;
+  }
+
+  /**
+   * @param workspace workspace directory on the agent
+   * @return images in the order of the image list, mapped to the Base64 encoded contents of their Dockerfile or null if none is
+   * given. Null if the image list file does not exist
+   * @throws AbortException if a Dockerfile does not exist, is not a file or is outside the workspace
+   * @throws IOException if the image list or a Dockerfile cannot be read
+   */
+  @Override
+  public LinkedHashMap<String, String> invoke(File workspace, VirtualChannel channel) throws IOException {
+    File imageList = resolve(workspace, imageListFileName);
+    if (!imageList.exists()) {
+      return null;
+    }
+
+    Path root = workspace.getCanonicalFile().toPath();
+    LinkedHashMap<String, String> images = new LinkedHashMap<>();
+    try (BufferedReader br = Files.newBufferedReader(imageList.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = br.readLine()) != null) {
+        Iterator<String> parts = Util.IMAGE_LIST_SPLITTER.split(line).iterator();
+        if (!parts.hasNext()) {
+          continue;
+        }
+        String imgId = parts.next();
+        String dfilecontents = null;
+        if (parts.hasNext()) {
+          String dockerfile = parts.next();
+          File file = resolve(workspace, dockerfile);
+          if (!file.isFile()) {
+            throw new AbortException("Cannot find Dockerfile \"" + dockerfile + "\" of image " + imgId + " under " + workspace
+                + ". Please ensure that the paths in the image list file are correct");
+          }
+          if (!allowOutsideWorkspace && !file.getCanonicalFile().toPath().startsWith(root)) {
+            throw new AbortException("Dockerfile \"" + dockerfile + "\" of image " + imgId + " is outside the workspace " + workspace
+                + ". Please ensure that the Dockerfiles in the image list file are inside the workspace");
+          }
+          dfilecontents = encode(file);
+        }
+        images.put(imgId, dfilecontents);
+      }
+    }
+    return images;
+  }
+
+  /**
+   * @return Base64 encoding of the Dockerfile, with line endings normalized to \n
+   */
+  private static String encode(File dockerfile) throws IOException {
+    StringBuilder b = new StringBuilder();
+    try (BufferedReader br = Files.newBufferedReader(dockerfile.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = br.readLine()) != null) {
+        b.append(line).append('\n');
+      }
+    }
+    return Base64.getEncoder().encodeToString(b.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @return the path as is if absolute, otherwise relative to the workspace, like FilePath does
+   */
+  private static File resolve(File workspace, String path) {
+    File file = new File(path);
+    return file.isAbsolute() ? file : new File(workspace, path);
+  }
+}
@@ -0,0 +1,158 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Reads a GET /images/{digest}/check response into an {@link ImageEvaluation} in a single pass over the tokens, optionally copying the
+ * response while dropping the findings of the first evaluation that are inherited from the base image. Findings are materialized one
+ * at a time and the ones that are kept go to a {@link PolicyFindingSpool}, so the cost of filtering is linear in the number of
+ * findings and memory is bounded by the largest finding.
+ */
+final class PolicyEvaluationReader {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper().enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+  private static final JsonFactory JSON_FACTORY = MAPPER.getFactory();
+
+  private PolicyEvaluationReader() {
+  }
+
+  /**
+   * Reads a policy evaluation response
+   *
+   * @param in response body
+   * @param copy destination of the filtered response, or null if no copy is needed. Not closed
+   * @param imageDigest image digest
+   * @param excludeFromBaseImage whether to drop findings inherited from the base image
+   * @return evaluation result, or null if the response contains no evaluations
+   * @throws IOException if the response is malformed or the copy cannot be written
+   */
+  static ImageEvaluation read(Reader in, Writer copy, String imageDigest, boolean excludeFromBaseImage) throws IOException {
+    String evaluatedTag = null, finalAction = null, finalActionReason = null, status = null;
+    int evaluationCount = 0, excludedCount = 0;
+    PolicyFindingSpool findings = null;
+    ActionCounts counts = new ActionCounts();
+
+    try (JsonParser parser = JSON_FACTORY.createParser(in);
+        JsonGenerator generator = null != copy ? JSON_FACTORY.createGenerator(copy) : null) {
+      if (null != generator) {
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      }
+
+      JsonToken token;
+      while (null != (token = parser.nextToken())) {
+        JsonStreamContext context = parser.getParsingContext();
+
+        if (token == JsonToken.START_OBJECT && isEvaluation(context.getParent())) {
+          evaluationCount++;
+        } else if (token.isScalarValue() && context.inObject()) {
+          if (context.getParent().inRoot() && "evaluated_tag".equals(context.getCurrentName())) {
+            evaluatedTag = parser.getText();
+          } else if (isFirstEvaluation(context)) {
+            switch (context.getCurrentName()) {
+              case "final_action":
+                finalAction = parser.getText();
+                break;
+              case "final_action_reason":
+                finalActionReason = parser.getText();
+                break;
+              case "status":
+                status = parser.getText();
+                break;
+              default:
+                break;
+            }
+          }
+        } else if (token == JsonToken.START_ARRAY && isFindings(context)) {
+          if (null != generator) {
+            generator.writeStartArray();
+          }
+          while (parser.nextToken() != JsonToken.END_ARRAY) {
+            JsonNode node = MAPPER.readTree(parser);
+            if (null != node && node.isObject()) {
+              PolicyFinding finding = PolicyFinding.of(node);
+              // remove records where inherited_from_base is true
+              if (excludeFromBaseImage && finding.isInheritedFromBase()) {
+                excludedCount++;
+                continue;
+              }
+              String json = MAPPER.writeValueAsString(node);
+              if (null == findings) {
+                findings = new PolicyFindingSpool();
+              }
+              findings.add(node, json);
+              counts.add(finding);
+              if (null != generator) {
+                generator.writeRawValue(json);
+              }
+            } else if (null != generator) {
+              MAPPER.writeTree(generator, null != node ? node : NullNode.getInstance());
+            }
+          }
+          if (null != generator) {
+            generator.writeEndArray();
+          }
+          continue;
+        }
+
+        if (null != generator) {
+          generator.copyCurrentEventExact(parser);
+        }
+      }
+      if (null != findings) {
+        findings.finish();
+      }
+    } catch (IOException | RuntimeException e) {
+      if (null != findings) {
+        findings.delete();
+      }
+      throw e;
+    }
+
+    if (evaluationCount < 1 || null == finalAction || null == finalActionReason || null == status) {
+      if (null != findings) {
+        findings.delete();
+      }
+      if (evaluationCount < 1) {
+        return null;
+      }
+      throw new IOException("Unexpected policy evaluation response, final_action, final_action_reason or status is missing");
+    }
+    return ImageEvaluation.of(imageDigest, evaluatedTag, finalAction, finalActionReason, status, findings, counts, excludedCount,
+        excludeFromBaseImage);
+  }
+
+  /**
+   * @return true if the context is the evaluations array of the response
+   */
+  private static boolean isEvaluation(JsonStreamContext context) {
+    return null != context && context.inArray() && "evaluations".equals(context.getParent().getCurrentName()) && context.getParent()
+        .getParent().inRoot();
+  }
+
+  /**
+   * @return true if the context is the first record of the evaluations array
+   */
+  private static boolean isFirstEvaluation(JsonStreamContext context) {
+    return context.inObject() && isEvaluation(context.getParent()) && context.getParent().getCurrentIndex() == 0;
+  }
+
+  /**
+   * @return true if the context is the findings array in the details of the first evaluation
+   */
+  private static boolean isFindings(JsonStreamContext context) {
+    JsonStreamContext details = context.getParent();
+    return "findings".equals(details.getCurrentName()) && null != details.getParent() && "details"
+        .equals(details.getParent().getCurrentName()) && isFirstEvaluation(details.getParent());
+  }
+}
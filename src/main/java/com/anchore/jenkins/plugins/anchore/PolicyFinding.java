@@ -0,0 +1,44 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * A single finding of a policy evaluation. Only the attributes the plugin acts on are extracted, the finding itself goes to a
+ * {@link PolicyFindingSpool} for writing the reports.
+ */
+public final class PolicyFinding {
+
+  private final String action;
+  private final boolean allowlisted;
+  private final boolean inheritedFromBase;
+
+  private PolicyFinding(String action, boolean allowlisted, boolean inheritedFromBase) {
+    this.action = action;
+    this.allowlisted = allowlisted;
+    this.inheritedFromBase = inheritedFromBase;
+  }
+
+  /**
+   * @param node finding from the details of a policy evaluation
+   * @return finding
+   */
+  static PolicyFinding of(JsonNode node) {
+    return new PolicyFinding(node.path("action").asText().toLowerCase(), node.path("allowlisted").asBoolean(),
+        "true".equals(node.path("inherited_from_base").asText()));
+  }
+
+  /**
+   * @return gate action in lower case: stop, warn or go
+   */
+  public String getAction() {
+    return action;
+  }
+
+  public boolean isAllowlisted() {
+    return allowlisted;
+  }
+
+  public boolean isInheritedFromBase() {
+    return inheritedFromBase;
+  }
+}
@@ -0,0 +1,141 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Findings of a policy evaluation, kept in a temporary file on the controller rather than in memory. Each finding is written once by
+ * {@link PolicyEvaluationReader} as it is read from the response, on two lines: the finding as JSON for the gates report, then the
+ * cells of its row in the policy evaluation report table. The reports are written from the file without parsing the findings again,
+ * only the flat array of table cells is read back.
+ */
+final class PolicyFindingSpool {
+
+  private static final Logger LOG = Logger.getLogger(PolicyFindingSpool.class.getName());
+
+  /** Columns of the policy evaluation report table, see buildPolicyEvalTable in renderOutput.js */
+  private static final String[] TABLE_FINDING_FIELDS = {"trigger_id", "gate", "trigger", "message", "action", "allowlisted",
+      "inherited_from_base", "policy_id", "recommendation", "rule_id"};
+  private static final TypeReference<List<Object>> CELLS = new TypeReference<List<Object>>() {
+  };
+
+  private final File file;
+  private Writer writer; // null once complete
+
+  PolicyFindingSpool() throws IOException {
+    file = File.createTempFile("anchore-findings-", ".json");
+    writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @param node finding from the details of a policy evaluation
+   * @param json the finding serialized as JSON
+   * @throws IOException if the finding cannot be written
+   */
+  void add(JsonNode node, String json) throws IOException {
+    List<Object> cells = new ArrayList<>(TABLE_FINDING_FIELDS.length);
+    for (String field : TABLE_FINDING_FIELDS) {
+      cells.add(tableCell(node.path(field)));
+    }
+    writer.write(json);
+    writer.write('\n');
+    writer.write(ReportTableWriter.MAPPER.writeValueAsString(cells));
+    writer.write('\n');
+  }
+
+  /**
+   * Completes the file once all the findings are added
+   *
+   * @throws IOException if the file cannot be written
+   */
+  void finish() throws IOException {
+    if (null != writer) {
+      writer.close();
+      writer = null;
+    }
+  }
+
+  /**
+   * Writes the findings as the elements of a JSON array, separated by commas
+   *
+   * @param out destination
+   * @throws IOException if the findings cannot be copied
+   */
+  void writeFindings(Writer out) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      boolean first = true;
+      String finding;
+      while (null != (finding = reader.readLine()) && null != reader.readLine()) {
+        if (!first) {
+          out.write(',');
+        }
+        out.write(finding);
+        first = false;
+      }
+    }
+  }
+
+  /**
+   * Writes the report table row of each finding, starting with the given cells
+   *
+   * @param table destination
+   * @param index position of the image in the image list, starting at 0
+   * @param imageId first cell of each row
+   * @param repoTag second cell of each row
+   * @throws IOException if the rows cannot be written
+   */
+  void writeTableRows(ReportTableWriter table, int index, String imageId, String repoTag) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String cells;
+      while (null != reader.readLine() && null != (cells = reader.readLine())) {
+        List<Object> row = new ArrayList<>(TABLE_FINDING_FIELDS.length + 2);
+        row.add(imageId);
+        row.add(repoTag);
+        row.addAll(ReportTableWriter.MAPPER.readValue(cells, CELLS));
+        table.add(index, row);
+      }
+    }
+  }
+
+  /**
+   * Removes the temporary file
+   */
+  void delete() {
+    try {
+      finish();
+    } catch (IOException e) {
+      LOG.log(Level.FINE, "Failed to close " + file, e);
+    }
+    try {
+      Files.deleteIfExists(file.toPath());
+    } catch (IOException e) {
+      LOG.log(Level.FINE, "Failed to delete " + file, e);
+    }
+  }
+
+  /**
+   * @return text of a string, the value itself for other scalars, an empty string if missing
+   */
+  private static Object tableCell(JsonNode value) {
+    if (value.isMissingNode() || value.isNull()) {
+      return "";
+    }
+    if (value.isTextual()) {
+      return value.asText();
+    }
+    return value.isContainerNode() ? value.toString() : value;
+  }
+}
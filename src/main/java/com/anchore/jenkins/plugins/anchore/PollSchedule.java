@@ -0,0 +1,176 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import com.anchore.jenkins.plugins.anchore.Util.POLL_STRATEGY;
+import com.google.common.base.Strings;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.DateUtils;
+
+/**
+ * Decides how long to wait between attempts while polling anchore-enterprise for the status of an image, and when to give up. An
+ * instance tracks the attempts for a single image and must not be shared. Use {@link #create(BuildConfig)} to get the schedule
+ * configured for the build.
+ */
+public abstract class PollSchedule {
+
+  private static final long INITIAL_INTERVAL_MILLIS = 1000;
+
+  private final long deadline; // System.nanoTime() based, Long.MAX_VALUE if no deadline
+  protected int attempts;
+
+  protected PollSchedule(long timeoutSeconds) {
+    this.deadline = timeoutSeconds > 0 ? System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds) : Long.MAX_VALUE;
+  }
+
+  /**
+   * Creates a new schedule for polling a single image
+   *
+   * @param config build configuration
+   * @return fixed schedule based on engineRetries and engineRetryInterval, or an adaptive schedule with exponential backoff
+   */
+  public static PollSchedule create(BuildConfig config) {
+    int retries = Integer.parseInt(config.getEngineRetries());
+    int retryInterval = Integer.parseInt(config.getEngineRetryInterval());
+    long timeout = Strings.isNullOrEmpty(config.getPollTimeout()) ? 0 : Long.parseLong(config.getPollTimeout());
+
+    if (config.getPollStrategy() == POLL_STRATEGY.adaptive) {
+      // Default to the same overall time budget as the fixed schedule
+      return new Adaptive(timeout > 0 ? timeout : (long) retries * retryInterval, Integer.parseInt(config.getPollMaxInterval()));
+    }
+    return new Fixed(timeout, retries, retryInterval);
+  }
+
+  /**
+   * Records the start of a new attempt
+   */
+  public void attempt() {
+    attempts++;
+  }
+
+  /**
+   * @return true if another attempt may be made
+   */
+  public boolean hasNext() {
+    return remainingMillis() > 0;
+  }
+
+  /**
+   * Computes the time to wait before the next attempt. Never exceeds the time left before the deadline
+   *
+   * @param retryAfterMillis wait time requested by the server, or a negative number if the server did not ask for one
+   * @return time to wait in milliseconds
+   */
+  public long nextDelayMillis(long retryAfterMillis) {
+    long delay = retryAfterMillis >= 0 ? Math.max(retryAfterMillis, nextIntervalMillis()) : nextIntervalMillis();
+    return Math.max(0, Math.min(delay, remainingMillis()));
+  }
+
+  /**
+   * @return hint logged when the schedule runs out of attempts
+   */
+  public abstract String getExhaustedHint();
+
+  protected abstract long nextIntervalMillis();
+
+  protected long remainingMillis() {
+    return deadline == Long.MAX_VALUE ? Long.MAX_VALUE : TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+  }
+
+  /**
+   * Extracts the wait time requested by anchore-enterprise via Retry-After header. Only honoured for 429 (Too Many Requests) and 503
+   * (Service Unavailable) responses
+   *
+   * @param response http response
+   * @return wait time in milliseconds or -1 if the response does not ask for one
+   */
+  public static long getRetryAfterMillis(HttpResponse response) {
+    int statusCode = response.getStatusLine().getStatusCode();
+    if (statusCode != 429 && statusCode != 503) {
+      return -1;
+    }
+    Header header = response.getFirstHeader("Retry-After");
+    if (null == header || Strings.isNullOrEmpty(header.getValue())) {
+      // The server is overloaded but did not say for how long, back off by at least one regular interval
+      return 0;
+    }
+    String value = header.getValue().trim();
+    try {
+      return TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+    } catch (NumberFormatException e) {
+      Date date = DateUtils.parseDate(value);
+      return null != date ? Math.max(0, date.getTime() - System.currentTimeMillis()) : 0;
+    }
+  }
+
+  /**
+   * Polls at a fixed interval for a fixed number of attempts (engineRetries and engineRetryInterval), optionally bounded by a deadline
+   */
+  static final class Fixed extends PollSchedule {
+
+    private final int maxAttempts;
+    private final long intervalMillis;
+
+    Fixed(long timeoutSeconds, int maxAttempts, int intervalSeconds) {
+      super(timeoutSeconds);
+      this.maxAttempts = maxAttempts;
+      this.intervalMillis = TimeUnit.SECONDS.toMillis(intervalSeconds);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return attempts < maxAttempts && super.hasNext();
+    }
+
+    @Override
+    public String getExhaustedHint() {
+      return "increasing engineRetries might help";
+    }
+
+    @Override
+    protected long nextIntervalMillis() {
+      return intervalMillis;
+    }
+
+    @Override
+    public String toString() {
+      return attempts + "/" + maxAttempts;
+    }
+  }
+
+  /**
+   * Starts polling fast and backs off exponentially up to a cap, with jitter to keep concurrent builds from polling in lockstep. Stops
+   * at the deadline rather than after a number of attempts
+   */
+  static final class Adaptive extends PollSchedule {
+
+    private final long maxIntervalMillis;
+
+    Adaptive(long timeoutSeconds, int maxIntervalSeconds) {
+      super(timeoutSeconds);
+      this.maxIntervalMillis = Math.max(INITIAL_INTERVAL_MILLIS, TimeUnit.SECONDS.toMillis(maxIntervalSeconds));
+    }
+
+    @Override
+    public String getExhaustedHint() {
+      return "increasing pollTimeout might help";
+    }
+
+    @Override
+    protected long nextIntervalMillis() {
+      // attempts is at least 1 here, the first wait happens after the first attempt
+      long base = INITIAL_INTERVAL_MILLIS << Math.min(Math.max(attempts - 1, 0), 20);
+      base = Math.min(base, maxIntervalMillis);
+      // Equal jitter, wait at least half of the computed interval
+      return base / 2 + ThreadLocalRandom.current().nextLong(base / 2 + 1);
+    }
+
+    @Override
+    public String toString() {
+      long remaining = remainingMillis();
+      return attempts + ", " + (remaining == Long.MAX_VALUE ? "no deadline" : TimeUnit.MILLISECONDS.toSeconds(remaining) + "s left");
+    }
+  }
+}
@@ -0,0 +1,434 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import jenkins.util.VirtualFile;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * A report table written by {@link ReportTableWriter}, served a page at a time in the format of the DataTables server-side processing
+ * protocol. Only the index is held in memory: the offsets of the rows, the precomputed orders of the sortable columns and the facets.
+ * A page reads just its rows from the rows file, filtering on facets and counting rows per facet value need no rows at all. Searching
+ * scans the rows file once per distinct search, the rows that match the last search are kept. Dictionary encoded columns are decoded
+ * with the dictionaries of the index as a page is written, and searched by matching the dictionaries rather than every row.
+ *
+ * <p>Report tables are not compressed, so reading a page skips to the offsets of its rows without reading the rows before them.</p>
+ */
+public final class ReportTable {
+
+  /** Upper bound of the rows returned in a page, DataTables requests all the rows with a page length of -1 */
+  static final int MAX_PAGE_LENGTH = 1000;
+
+  private static final JsonFactory JSON_FACTORY = ReportTableWriter.MAPPER.getFactory();
+
+  private final VirtualFile rowsFile;
+  private final long[] offsets;
+  private final Map<Integer, int[]> orders;
+  private final Map<String, Facet> facets;
+  private final Map<Integer, String[]> dictionaries;
+  private String lastSearch;
+  private BitSet lastMatches;
+
+  private ReportTable(VirtualFile rowsFile, long[] offsets, Map<Integer, int[]> orders, Map<String, Facet> facets,
+      Map<Integer, String[]> dictionaries) {
+    this.rowsFile = rowsFile;
+    this.offsets = offsets;
+    this.orders = orders;
+    this.facets = facets;
+    this.dictionaries = dictionaries;
+  }
+
+  /**
+   * Reads the index of a report table
+   *
+   * @param dir directory of the index and the rows file
+   * @param indexFileName name of the index file
+   * @return report table
+   * @throws IOException if the index cannot be read or is malformed
+   */
+  static ReportTable read(VirtualFile dir, String indexFileName) throws IOException {
+    String rowsFileName = null;
+    long[] offsets = null;
+    Map<Integer, int[]> orders = new HashMap<>();
+    Map<String, Facet> facets = new LinkedHashMap<>();
+    Map<Integer, String[]> dictionaries = new HashMap<>();
+
+    try (JsonParser parser = JSON_FACTORY.createParser(open(dir.child(indexFileName)))) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Unexpected report table index " + indexFileName);
+      }
+      int count = 0;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+        switch (field) {
+          case "rows":
+            rowsFileName = parser.getText();
+            break;
+          case "count":
+            count = parser.getIntValue();
+            break;
+          case "offsets":
+            offsets = new long[count + 1];
+            for (int i = 0; parser.nextToken() != JsonToken.END_ARRAY; i++) {
+              offsets[i] = parser.getLongValue();
+            }
+            break;
+          case "orders":
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+              int column = Integer.parseInt(parser.getCurrentName());
+              parser.nextToken();
+              int[] order = new int[count];
+              for (int i = 0; parser.nextToken() != JsonToken.END_ARRAY; i++) {
+                order[i] = parser.getIntValue();
+              }
+              orders.put(column, order);
+            }
+            break;
+          case "facets":
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+              String name = parser.getCurrentName();
+              parser.nextToken();
+              facets.put(name, Facet.read(parser, count));
+            }
+            break;
+          case "dictionaries":
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+              int column = Integer.parseInt(parser.getCurrentName());
+              parser.nextToken();
+              List<String> values = new ArrayList<>();
+              while (parser.nextToken() != JsonToken.END_ARRAY) {
+                values.add(parser.getText());
+              }
+              dictionaries.put(column, values.toArray(new String[0]));
+            }
+            break;
+          default:
+            parser.skipChildren();
+            break;
+        }
+      }
+    } catch (RuntimeException e) {
+      throw new IOException("Unexpected report table index " + indexFileName, e);
+    }
+
+    if (null == rowsFileName || null == offsets || rowsFileName.contains("/") || rowsFileName.contains("\\")) {
+      throw new IOException("Unexpected report table index " + indexFileName);
+    }
+    return new ReportTable(dir.child(rowsFileName), offsets, orders, facets, dictionaries);
+  }
+
+  /**
+   * @return total number of rows
+   */
+  public int getRowCount() {
+    return offsets.length - 1;
+  }
+
+  /**
+   * @param column column index
+   * @return true if the table can be ordered by the column
+   */
+  public boolean isSortable(int column) {
+    return orders.containsKey(column);
+  }
+
+  /**
+   * @return names of the facets rows can be filtered on
+   */
+  public Set<String> getFacetNames() {
+    return facets.keySet();
+  }
+
+  /**
+   * Writes a page of rows as a DataTables server-side processing response, along with the number of rows per facet value
+   *
+   * @param out destination
+   * @param draw draw counter of the request, echoed back
+   * @param start index of the first row of the page, in the filtered and ordered rows
+   * @param length number of rows of the page, negative for all the rows up to {@link #MAX_PAGE_LENGTH}
+   * @param search space separated terms that must all occur in a row, case insensitive. Empty for all the rows
+   * @param filters facet values the rows must have, by facet name. Unknown facets are ignored
+   * @param column column to order by, rows are in the order they were added if the column is not sortable
+   * @param ascending order direction
+   * @throws IOException if the rows cannot be read or the response cannot be written
+   */
+  public void writePage(Writer out, int draw, int start, int length, String search, Map<String, String> filters, int column,
+      boolean ascending) throws IOException {
+    int rowCount = getRowCount();
+    BitSet matches = matches(search);
+    List<Facet> filterFacets = new ArrayList<>();
+    List<Integer> filterCodes = new ArrayList<>();
+    for (Map.Entry<String, String> filter : filters.entrySet()) {
+      Facet facet = facets.get(filter.getKey());
+      if (null != facet) {
+        filterFacets.add(facet);
+        filterCodes.add(facet.code(filter.getValue()));
+      }
+    }
+    int[] order = orders.get(column);
+    if (length < 0 || length > MAX_PAGE_LENGTH) {
+      length = MAX_PAGE_LENGTH;
+    }
+    start = Math.max(start, 0);
+
+    // Walk the order, counting the rows that pass the search and the filters and picking the ones on the page
+    int[] page = new int[Math.min(length, rowCount)];
+    int pageSize = 0, filtered = 0;
+    rows:
+    for (int i = 0; i < rowCount; i++) {
+      int position = ascending ? i : rowCount - 1 - i;
+      int row = null != order ? order[position] : position;
+      if (null != matches && !matches.get(row)) {
+        continue;
+      }
+      for (int f = 0; f < filterFacets.size(); f++) {
+        if (filterFacets.get(f).rows[row] != filterCodes.get(f)) {
+          continue rows;
+        }
+      }
+      if (filtered >= start && pageSize < page.length) {
+        page[pageSize++] = row;
+      }
+      filtered++;
+    }
+
+    String[] rows = readRows(Arrays.copyOf(page, pageSize));
+
+    try (JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      generator.writeStartObject();
+      generator.writeNumberField("draw", draw);
+      generator.writeNumberField("recordsTotal", rowCount);
+      generator.writeNumberField("recordsFiltered", filtered);
+      generator.writeArrayFieldStart("data");
+      for (int i = 0; i < pageSize; i++) {
+        if (dictionaries.isEmpty()) {
+          generator.writeRawValue(rows[i]);
+        } else {
+          writeDecoded(generator, rows[i]);
+        }
+      }
+      generator.writeEndArray();
+      if (!facets.isEmpty()) {
+        // Number of rows per facet value over the whole table, precomputed when the table was written
+        generator.writeObjectFieldStart("facets");
+        for (Map.Entry<String, Facet> facet : facets.entrySet()) {
+          generator.writeObjectFieldStart(facet.getKey());
+          for (int code = 0; code < facet.getValue().values.length; code++) {
+            generator.writeNumberField(facet.getValue().values[code], facet.getValue().counts[code]);
+          }
+          generator.writeEndObject();
+        }
+        generator.writeEndObject();
+      }
+      generator.writeEndObject();
+    }
+  }
+
+  /**
+   * @return the given rows, serialized as JSON arrays
+   */
+  private String[] readRows(int[] page) throws IOException {
+    int[] sorted = page.clone();
+    Arrays.sort(sorted);
+    Map<Integer, String> rows = new HashMap<>();
+    if (sorted.length > 0) {
+      // Rows are read in file order in a single pass, skipping over the rows in between
+      try (InputStream in = open(rowsFile)) {
+        long position = 0;
+        for (int row : sorted) {
+          if (rows.containsKey(row)) {
+            continue;
+          }
+          IOUtils.skipFully(in, offsets[row] - position);
+          byte[] bytes = new byte[(int) (offsets[row + 1] - offsets[row])];
+          IOUtils.readFully(in, bytes);
+          position = offsets[row + 1];
+          // drop the line separator
+          rows.put(row, new String(bytes, 0, bytes.length - 1, StandardCharsets.UTF_8));
+        }
+      }
+    }
+
+    String[] result = new String[page.length];
+    for (int i = 0; i < page.length; i++) {
+      result[i] = rows.get(page[i]);
+    }
+    return result;
+  }
+
+  /**
+   * Writes a row with the positions in the encoded columns replaced by the values from the dictionaries
+   */
+  private void writeDecoded(JsonGenerator generator, String row) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(row)) {
+      parser.nextToken();
+      generator.writeStartArray();
+      for (int column = 0; parser.nextToken() != JsonToken.END_ARRAY; column++) {
+        String[] dictionary = dictionaries.get(column);
+        if (null != dictionary && parser.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+          generator.writeString(dictionary[parser.getIntValue()]);
+        } else {
+          generator.copyCurrentStructure(parser);
+        }
+      }
+      generator.writeEndArray();
+    }
+  }
+
+  /**
+   * @return rows that contain all the terms of the search, or null if the search is empty
+   */
+  private synchronized BitSet matches(String search) throws IOException {
+    String[] terms = null != search ? search.trim().toLowerCase(Locale.ROOT).split("\\s+") : new String[0];
+    if (terms.length == 0 || terms[0].isEmpty()) {
+      return null;
+    }
+    String normalized = String.join(" ", terms);
+    if (normalized.equals(lastSearch)) {
+      return lastMatches;
+    }
+
+    // Terms found in each value of the dictionaries, so that encoded cells are matched by their position
+    Map<Integer, boolean[][]> dictionaryMatches = new HashMap<>();
+    for (Map.Entry<Integer, String[]> dictionary : dictionaries.entrySet()) {
+      boolean[][] valueMatches = new boolean[dictionary.getValue().length][];
+      for (int code = 0; code < valueMatches.length; code++) {
+        valueMatches[code] = find(dictionary.getValue()[code].toLowerCase(Locale.ROOT), terms);
+      }
+      dictionaryMatches.put(dictionary.getKey(), valueMatches);
+    }
+
+    BitSet matches = new BitSet(getRowCount());
+    try (JsonParser parser = JSON_FACTORY.createParser(open(rowsFile))) {
+      boolean[] found = new boolean[terms.length];
+      int row = -1, column = -1;
+      JsonToken token;
+      while (null != (token = parser.nextToken())) {
+        if (token == JsonToken.START_ARRAY && parser.getParsingContext().getParent().inRoot()) {
+          row++;
+          column = -1;
+          Arrays.fill(found, false);
+        } else if (token == JsonToken.END_ARRAY && parser.getParsingContext().inRoot()) {
+          boolean all = true;
+          for (boolean termFound : found) {
+            all &= termFound;
+          }
+          if (all) {
+            matches.set(row);
+          }
+        } else if (token.isScalarValue()) {
+          column++;
+          boolean[][] valueMatches = dictionaryMatches.get(column);
+          if (null != valueMatches && token == JsonToken.VALUE_NUMBER_INT) {
+            boolean[] cellMatches = valueMatches[parser.getIntValue()];
+            for (int i = 0; i < terms.length; i++) {
+              found[i] |= cellMatches[i];
+            }
+          } else {
+            String value = parser.getText().toLowerCase(Locale.ROOT);
+            for (int i = 0; i < terms.length; i++) {
+              found[i] |= value.contains(terms[i]);
+            }
+          }
+        }
+      }
+    }
+
+    lastSearch = normalized;
+    lastMatches = matches;
+    return matches;
+  }
+
+  /**
+   * @return for each term, whether the value contains it
+   */
+  private static boolean[] find(String value, String[] terms) {
+    boolean[] found = new boolean[terms.length];
+    for (int i = 0; i < terms.length; i++) {
+      found[i] = value.contains(terms[i]);
+    }
+    return found;
+  }
+
+  private static InputStream open(VirtualFile file) throws IOException {
+    return new BufferedInputStream(file.open());
+  }
+
+  /**
+   * Facet of a report table, see {@link ReportTableWriter}
+   */
+  private static final class Facet {
+
+    private final String[] values;
+    private final int[] counts;
+    private final int[] rows;
+
+    private Facet(String[] values, int[] counts, int[] rows) {
+      this.values = values;
+      this.counts = counts;
+      this.rows = rows;
+    }
+
+    /**
+     * @return code of the value, -1 if no row has the value
+     */
+    private int code(String value) {
+      return Arrays.asList(values).indexOf(value);
+    }
+
+    /**
+     * Reads a facet of the index, the parser is positioned at the start of the facet
+     */
+    private static Facet read(JsonParser parser, int rowCount) throws IOException {
+      List<String> values = new ArrayList<>();
+      List<Integer> counts = new ArrayList<>();
+      int[] rows = new int[rowCount];
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+        switch (field) {
+          case "values":
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+              values.add(parser.getText());
+            }
+            break;
+          case "counts":
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+              counts.add(parser.getIntValue());
+            }
+            break;
+          case "rows":
+            for (int i = 0; parser.nextToken() != JsonToken.END_ARRAY; i++) {
+              rows[i] = parser.getIntValue();
+            }
+            break;
+          default:
+            parser.skipChildren();
+            break;
+        }
+      }
+      if (values.size() != counts.size()) {
+        throw new IOException("Unexpected report table facet");
+      }
+      return new Facet(values.toArray(new String[0]), counts.stream().mapToInt(Integer::intValue).toArray(), rows);
+    }
+  }
+}
@@ -0,0 +1,278 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes a report table for server-side paging by {@link ReportTable}. Rows are written to the rows file as they are added, one JSON
+ * array per line, and only the byte offset, the group (the position of the image in the image list) and the sort keys of each row are
+ * kept. Sort keys are dictionary encoded, the values of a sortable column such as the gate action or the gate repeat a lot.
+ *
+ * <p>{@link #finish(OutputStream)} writes the index: the offsets of the rows and, for each sortable column, the row numbers in
+ * ascending order of that column. Rows that compare equal are kept in the order of the image list. For each facet, the index holds
+ * the facet value of every row and the number of rows per value, so that rows can be filtered and counted without reading them.</p>
+ *
+ * <p>Columns whose values repeat across rows, such as the image tag or the package of a vulnerability, can be dictionary encoded in
+ * the rows file: the row holds the position of the value in a dictionary of the column, and the dictionaries are written to the
+ * index. Only the dictionaries are kept while rows are added, so encode only columns with few distinct values.</p>
+ */
+final class ReportTableWriter implements Closeable {
+
+  private static final Logger LOG = Logger.getLogger(ReportTableWriter.class.getName());
+
+  static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final String rowsFileName;
+  private final OutputStream rows;
+  private final int[] sortColumns;
+  private final int[] encodedColumns;
+  private final List<Map<String, Integer>> columnDictionaries = new ArrayList<>();
+  private final List<Comparator<String>> sortOrders;
+  private final List<Map<String, Integer>> dictionaries = new ArrayList<>();
+  private final List<int[]> keys = new ArrayList<>();
+  private final List<String> facetNames;
+  private final List<Function<List<?>, String>> facetValues;
+  private final List<Map<String, Integer>> facetDictionaries = new ArrayList<>();
+  private final List<int[]> facetCodes = new ArrayList<>();
+  private long[] offsets = new long[1024];
+  private int[] groups = new int[1024];
+  private int rowCount;
+
+  /**
+   * @param rowsFileName name of the rows file, recorded in the index. The index and the rows file are expected in the same directory
+   * @param rows stream of the rows file, closed by this writer
+   * @param sortColumns sortable columns and the order of their values, in the order they are listed
+   * @param facets facet names and the function that computes the facet value of a row
+   * @param encodedColumns columns to dictionary encode in the rows file, empty to write the values themselves
+   */
+  ReportTableWriter(String rowsFileName, OutputStream rows, LinkedHashMap<Integer, Comparator<String>> sortColumns,
+      LinkedHashMap<String, Function<List<?>, String>> facets, Set<Integer> encodedColumns) {
+    this.rowsFileName = rowsFileName;
+    this.rows = new BufferedOutputStream(rows);
+    this.sortColumns = new int[sortColumns.size()];
+    this.sortOrders = new ArrayList<>(sortColumns.values());
+    int i = 0;
+    for (Integer column : sortColumns.keySet()) {
+      this.sortColumns[i++] = column;
+      dictionaries.add(new HashMap<>());
+      keys.add(new int[offsets.length]);
+    }
+    this.facetNames = new ArrayList<>(facets.keySet());
+    this.facetValues = new ArrayList<>(facets.values());
+    for (int j = 0; j < facetNames.size(); j++) {
+      facetDictionaries.add(new LinkedHashMap<>());
+      facetCodes.add(new int[offsets.length]);
+    }
+    this.encodedColumns = new int[encodedColumns.size()];
+    i = 0;
+    for (Integer column : new TreeSet<>(encodedColumns)) {
+      this.encodedColumns[i++] = column;
+      columnDictionaries.add(new LinkedHashMap<>());
+    }
+  }
+
+  /**
+   * Adds a row. Safe to invoke concurrently
+   *
+   * @param group position of the image in the image list, starting at 0
+   * @param cells values of the row
+   * @throws IOException if the row cannot be written
+   */
+  synchronized void add(int group, List<?> cells) throws IOException {
+    List<Object> stored = new ArrayList<>(cells);
+    for (int i = 0; i < encodedColumns.length; i++) {
+      Object cell = cells.get(encodedColumns[i]);
+      stored.set(encodedColumns[i], encode(columnDictionaries.get(i), null != cell ? cell.toString() : ""));
+    }
+    byte[] row = MAPPER.writeValueAsBytes(stored);
+
+    if (rowCount + 1 == offsets.length) {
+      int capacity = offsets.length * 2;
+      offsets = Arrays.copyOf(offsets, capacity);
+      groups = Arrays.copyOf(groups, capacity);
+      for (int i = 0; i < keys.size(); i++) {
+        keys.set(i, Arrays.copyOf(keys.get(i), capacity));
+      }
+      for (int i = 0; i < facetCodes.size(); i++) {
+        facetCodes.set(i, Arrays.copyOf(facetCodes.get(i), capacity));
+      }
+    }
+
+    for (int i = 0; i < sortColumns.length; i++) {
+      Object cell = cells.get(sortColumns[i]);
+      keys.get(i)[rowCount] = encode(dictionaries.get(i), null != cell ? cell.toString() : "");
+    }
+    for (int i = 0; i < facetNames.size(); i++) {
+      facetCodes.get(i)[rowCount] = encode(facetDictionaries.get(i), facetValues.get(i).apply(cells));
+    }
+    groups[rowCount] = group;
+
+    rows.write(row);
+    rows.write('\n');
+    offsets[rowCount + 1] = offsets[rowCount] + row.length + 1;
+    rowCount++;
+  }
+
+  /**
+   * Completes the rows file and writes the index
+   *
+   * @param index stream of the index file, closed by this method
+   * @throws IOException if the rows file or the index cannot be written
+   */
+  synchronized void finish(OutputStream index) throws IOException {
+    rows.close();
+
+    try (JsonGenerator generator = MAPPER.getFactory().createGenerator(new BufferedOutputStream(index))) {
+      generator.writeStartObject();
+      generator.writeStringField("rows", rowsFileName);
+      generator.writeNumberField("count", rowCount);
+      generator.writeArrayFieldStart("offsets");
+      for (int i = 0; i <= rowCount; i++) {
+        generator.writeNumber(offsets[i]);
+      }
+      generator.writeEndArray();
+      generator.writeObjectFieldStart("orders");
+      for (int i = 0; i < sortColumns.length; i++) {
+        generator.writeArrayFieldStart(String.valueOf(sortColumns[i]));
+        for (int row : sortedRows(i)) {
+          generator.writeNumber(row);
+        }
+        generator.writeEndArray();
+      }
+      generator.writeEndObject();
+      generator.writeObjectFieldStart("facets");
+      for (int i = 0; i < facetNames.size(); i++) {
+        writeFacet(generator, i);
+      }
+      generator.writeEndObject();
+      generator.writeObjectFieldStart("dictionaries");
+      for (int i = 0; i < encodedColumns.length; i++) {
+        generator.writeArrayFieldStart(String.valueOf(encodedColumns[i]));
+        for (String value : columnDictionaries.get(i).keySet()) {
+          generator.writeString(value);
+        }
+        generator.writeEndArray();
+      }
+      generator.writeEndObject();
+      generator.writeEndObject();
+    }
+  }
+
+  /**
+   * Writes the values of a facet in the order they first occurred, the number of rows per value and the value of every row
+   */
+  private void writeFacet(JsonGenerator generator, int facet) throws IOException {
+    Map<String, Integer> dictionary = facetDictionaries.get(facet);
+    int[] codes = facetCodes.get(facet);
+    int[] counts = new int[dictionary.size()];
+    for (int row = 0; row < rowCount; row++) {
+      counts[codes[row]]++;
+    }
+
+    generator.writeObjectFieldStart(facetNames.get(facet));
+    generator.writeArrayFieldStart("values");
+    for (String value : dictionary.keySet()) {
+      generator.writeString(value);
+    }
+    generator.writeEndArray();
+    generator.writeArrayFieldStart("counts");
+    for (int count : counts) {
+      generator.writeNumber(count);
+    }
+    generator.writeEndArray();
+    generator.writeArrayFieldStart("rows");
+    for (int row = 0; row < rowCount; row++) {
+      generator.writeNumber(codes[row]);
+    }
+    generator.writeEndArray();
+    generator.writeEndObject();
+  }
+
+  /**
+   * @return code of the value in the dictionary, added if new. Codes are assigned in the order values first occur
+   */
+  private static int encode(Map<String, Integer> dictionary, String value) {
+    Integer code = dictionary.get(value);
+    if (null == code) {
+      code = dictionary.size();
+      dictionary.put(value, code);
+    }
+    return code;
+  }
+
+  /**
+   * @return row numbers in ascending order of the sortable column at the given position, then in the order of the image list
+   */
+  private int[] sortedRows(int sortColumn) {
+    // Rank the distinct values once, rows are then compared by rank
+    Map<String, Integer> dictionary = dictionaries.get(sortColumn);
+    String[] values = new String[dictionary.size()];
+    for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+      values[entry.getValue()] = entry.getKey();
+    }
+    Integer[] codes = new Integer[values.length];
+    for (int i = 0; i < codes.length; i++) {
+      codes[i] = i;
+    }
+    Comparator<String> order = sortOrders.get(sortColumn);
+    Arrays.sort(codes, (a, b) -> order.compare(values[a], values[b]));
+    int[] ranks = new int[codes.length];
+    for (int i = 0; i < codes.length; i++) {
+      ranks[codes[i]] = i;
+    }
+
+    int[] columnKeys = keys.get(sortColumn);
+    Integer[] sorted = new Integer[rowCount];
+    for (int i = 0; i < rowCount; i++) {
+      sorted[i] = i;
+    }
+    // Rows of an image are added together, so the row number orders the rows within an image
+    Arrays.sort(sorted, Comparator.<Integer>comparingInt(row -> ranks[columnKeys[row]]).thenComparingInt(row -> groups[row])
+        .thenComparingInt(row -> row));
+    int[] result = new int[rowCount];
+    for (int i = 0; i < rowCount; i++) {
+      result[i] = sorted[i];
+    }
+    return result;
+  }
+
+  /**
+   * Releases the rows file, does not write the index
+   */
+  @Override
+  public synchronized void close() {
+    try {
+      rows.close();
+    } catch (IOException e) {
+      LOG.log(Level.FINE, "Failed to close report table rows", e);
+    }
+  }
+
+  /**
+   * @param ranked values in ascending order, other values sort after them in natural order
+   * @return case insensitive order of the given values
+   */
+  static Comparator<String> rankOrder(String... ranked) {
+    List<String> ranking = Arrays.asList(ranked);
+    return Comparator.<String>comparingInt(value -> {
+      int rank = ranking.indexOf(value.toLowerCase());
+      return rank < 0 ? ranking.size() : rank;
+    }).thenComparing(String.CASE_INSENSITIVE_ORDER);
+  }
+}
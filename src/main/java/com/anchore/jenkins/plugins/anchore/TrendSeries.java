@@ -0,0 +1,112 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import hudson.util.ColorPalette;
+import java.awt.Color;
+
+/**
+ * Series that the Anchore trend graph can show, computed from the counters of the trend index without reading any report. Values are
+ * listed from the bottom of the stack to the top.
+ */
+enum TrendSeries {
+
+  ACTIONS("Policy actions", new String[] {"Go Actions", "Warn Actions", "Stop Actions"},
+      new Color[] {ColorPalette.BLUE, ColorPalette.YELLOW, ColorPalette.RED}) {
+    @Override
+    int[] values(AnchoreTrendIndex.Record record) {
+      return new int[] {record.getGoActionCount(), record.getWarnActionCount(), record.getStopActionCount()};
+    }
+  },
+
+  SEVERITY("Vulnerabilities by severity", new String[] {"Unknown", "Negligible", "Low", "Medium", "High", "Critical"},
+      new Color[] {Color.LIGHT_GRAY, ColorPalette.GREY, ColorPalette.BLUE, ColorPalette.YELLOW, new Color(0xf57900),
+          ColorPalette.RED}) {
+    @Override
+    int[] values(AnchoreTrendIndex.Record record) {
+      int[] counts = record.getVulnerabilityCounts();
+      if (null == counts) {
+        return null;
+      }
+      // Counts are kept from critical to unknown
+      int[] values = new int[VulnerabilityListingParser.SEVERITIES.length];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = counts[values.length - 1 - i];
+      }
+      return values;
+    }
+  },
+
+  FIX("Vulnerabilities by fix availability", new String[] {"No Fix Available", "Fix Available"},
+      new Color[] {ColorPalette.GREY, ColorPalette.BLUE}) {
+    @Override
+    int[] values(AnchoreTrendIndex.Record record) {
+      int[] counts = record.getVulnerabilityCounts();
+      if (null == counts) {
+        return null;
+      }
+      int total = 0;
+      for (int i = 0; i < VulnerabilityListingParser.SEVERITIES.length; i++) {
+        total += counts[i];
+      }
+      int fixable = counts[VulnerabilityListingParser.SEVERITIES.length];
+      return new int[] {total - fixable, fixable};
+    }
+  },
+
+  IMAGES("Images by final action", new String[] {"Go Images", "Warn Images", "Stop Images"},
+      new Color[] {ColorPalette.BLUE, ColorPalette.YELLOW, ColorPalette.RED}) {
+    @Override
+    int[] values(AnchoreTrendIndex.Record record) {
+      int[] counts = record.getImageActionCounts();
+      // Counts are kept as stop, warn and go
+      return null != counts ? new int[] {counts[2], counts[1], counts[0]} : null;
+    }
+  };
+
+  private final String title;
+  private final String[] labels;
+  private final Color[] colors;
+
+  TrendSeries(String title, String[] labels, Color[] colors) {
+    this.title = title;
+    this.labels = labels;
+    this.colors = colors;
+  }
+
+  /**
+   * @param record build of the trend index
+   * @return values of the build in the order of {@link #getLabels()}, null if the build did not record them
+   */
+  abstract int[] values(AnchoreTrendIndex.Record record);
+
+  /**
+   * @return name of the series in URLs
+   */
+  String getName() {
+    return name().toLowerCase();
+  }
+
+  String getTitle() {
+    return title;
+  }
+
+  String[] getLabels() {
+    return labels.clone();
+  }
+
+  Color[] getColors() {
+    return colors.clone();
+  }
+
+  /**
+   * @param name name of a series as in URLs, may be null
+   * @return the series of that name, {@link #ACTIONS} if there is none
+   */
+  static TrendSeries of(String name) {
+    for (TrendSeries series : values()) {
+      if (series.getName().equals(name)) {
+        return series;
+      }
+    }
+    return ACTIONS;
+  }
+}
@@ -16,6 +16,8 @@ public class Util {
 
   public enum API_VERSION {v1, v2}
 
+  public enum POLL_STRATEGY {fixed, adaptive}
+
   public static final API_VERSION GET_API_VERSION_FROM_URL(String engineUrl) {
     if (engineUrl.endsWith("v2") || engineUrl.endsWith("v2/")){
       return API_VERSION.v2;
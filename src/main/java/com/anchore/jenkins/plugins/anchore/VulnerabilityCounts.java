@@ -0,0 +1,36 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Number of vulnerabilities of a build by severity, and the number of them with a fix available. Counted from the rows of the
+ * vulnerability table as they are written, so that trends need not read the vulnerability listing of every build.
+ */
+public final class VulnerabilityCounts {
+
+  // One count per severity in the order of VulnerabilityListingParser.SEVERITIES, then the fixable count
+  private final int[] counts = new int[VulnerabilityListingParser.SEVERITIES.length + 1];
+
+  /**
+   * Counts the vulnerability of a row of the vulnerability table. Severities other than the known ones are counted as unknown
+   *
+   * @param row row of the vulnerability table
+   */
+  void add(List<?> row) {
+    String value = VulnerabilityListingParser.severity(row).toLowerCase();
+    int severity = Arrays.asList(VulnerabilityListingParser.SEVERITIES).indexOf(value);
+    counts[severity < 0 ? VulnerabilityListingParser.SEVERITIES.length - 1 : severity]++;
+    if (VulnerabilityListingParser.isFixable(row)) {
+      counts[counts.length - 1]++;
+    }
+  }
+
+  /**
+   * @return the counts by severity from critical to unknown followed by the fixable count, the encoding kept in build.xml and in the
+   * trend index
+   */
+  int[] toArray() {
+    return counts.clone();
+  }
+}
@@ -0,0 +1,205 @@
+package com.anchore.jenkins.plugins.anchore;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Turns a /images/{digest}/vuln/all response into rows of the vulnerability table (anchore_security.json) without materializing the
+ * response. The response is tokenized as it is read and each vulnerability is written out as soon as it is complete, so memory use is
+ * bounded by a single vulnerability record regardless of the size of the listing.
+ *
+ * <p>Rows are written as comma separated JSON arrays without enclosing brackets, ready to be spliced into the data array of the
+ * table.</p>
+ */
+final class VulnerabilityListingParser {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  // Keys of a vulnerability record that make up a row, in column order after the tag
+  private static final String[] ROW_KEYS = {"vuln", "severity", "package", "fix", "inherited_from_base", "url"};
+
+  // Columns of a row
+  private static final int TAG_COLUMN = 0, SEVERITY_COLUMN = 2, FIX_COLUMN = 4;
+
+  /** Severities of vulnerabilities, from critical to unknown */
+  static final String[] SEVERITIES = {"critical", "high", "medium", "low", "negligible", "unknown"};
+
+  private VulnerabilityListingParser() {
+  }
+
+  /**
+   * Reads the vulnerability listing and writes its rows
+   *
+   * @param in vulnerability listing response body, read to the end but not closed
+   * @param rows destination of the rows, not closed
+   * @param tag image tag, first column of every row
+   * @param hasAncestors whether the image has ancestors. If not, no vulnerability is inherited from a base image
+   * @param excludeFromBaseImage whether to drop vulnerabilities inherited from the base image
+   * @return number of rows written
+   * @throws IOException if the listing cannot be read or is malformed, or the rows cannot be written
+   */
+  static int writeRows(InputStream in, OutputStream rows, String tag, boolean hasAncestors, boolean excludeFromBaseImage)
+      throws IOException {
+    int count = 0;
+    try (JsonParser parser = JSON_FACTORY.createParser(in);
+        JsonGenerator generator = JSON_FACTORY.createGenerator(rows)) {
+      parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      generator.setRootValueSeparator(new SerializedString(","));
+
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Unexpected vulnerability listing, expected a JSON object");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if (!"vulnerabilities".equals(field) || value != JsonToken.START_ARRAY) {
+          parser.skipChildren();
+          continue;
+        }
+
+        Map<String, String> record = new HashMap<>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+          record.clear();
+          readRecord(parser, record);
+
+          String inherited = hasAncestors ? String.valueOf(record.get("inherited_from_base")) : "false";
+          if (excludeFromBaseImage && hasAncestors && inherited.equals("true")) {
+            continue;
+          }
+
+          generator.writeStartArray();
+          generator.writeString(tag);
+          for (String key : ROW_KEYS) {
+            generator.writeString(key.equals("inherited_from_base") ? inherited : String.valueOf(record.get(key)));
+          }
+          generator.writeEndArray();
+          count++;
+        }
+      }
+      generator.flush();
+    }
+
+    // Drain whatever follows the listing so the complete response reaches any tee on the stream
+    byte[] buffer = new byte[8192];
+    while (in.read(buffer) != -1) {
+      // discard
+    }
+    return count;
+  }
+
+  /**
+   * @return sortable columns of the vulnerability table: tag, CVE ID, severity and package. Severity sorts from critical to unknown
+   */
+  static LinkedHashMap<Integer, Comparator<String>> tableSortColumns() {
+    LinkedHashMap<Integer, Comparator<String>> columns = new LinkedHashMap<>();
+    columns.put(TAG_COLUMN, String.CASE_INSENSITIVE_ORDER);
+    columns.put(1, String.CASE_INSENSITIVE_ORDER);
+    columns.put(SEVERITY_COLUMN, ReportTableWriter.rankOrder(SEVERITIES));
+    columns.put(3, String.CASE_INSENSITIVE_ORDER);
+    return columns;
+  }
+
+  /**
+   * @return columns of the vulnerability table whose values repeat across rows, dictionary encoded in the compact format: tag,
+   * severity, package, fix and whether the vulnerability is inherited. CVE IDs and URLs are mostly distinct and kept as they are
+   */
+  static Set<Integer> tableEncodedColumns() {
+    return new HashSet<>(Arrays.asList(TAG_COLUMN, SEVERITY_COLUMN, 3, FIX_COLUMN, 5));
+  }
+
+  /**
+   * @return facets of the vulnerability table: severity, image (tag) and whether a fix is available
+   */
+  static LinkedHashMap<String, Function<List<?>, String>> tableFacets() {
+    LinkedHashMap<String, Function<List<?>, String>> facets = new LinkedHashMap<>();
+    facets.put("severity", VulnerabilityListingParser::severity);
+    facets.put("image", row -> String.valueOf(row.get(TAG_COLUMN)));
+    facets.put("fix", row -> String.valueOf(isFixable(row)));
+    return facets;
+  }
+
+  /**
+   * @return severity of the vulnerability of a row, as reported by anchore-enterprise
+   */
+  static String severity(List<?> row) {
+    return String.valueOf(row.get(SEVERITY_COLUMN));
+  }
+
+  /**
+   * @return true if a fix is available for the vulnerability of a row
+   */
+  static boolean isFixable(List<?> row) {
+    String fix = String.valueOf(row.get(FIX_COLUMN));
+    return !fix.isEmpty() && !fix.equals("None") && !fix.equals("null");
+  }
+
+  /**
+   * Reads back rows written by {@link #writeRows(InputStream, OutputStream, String, boolean, boolean)}
+   *
+   * @param rows file of comma separated rows
+   * @param handler receives each row in turn
+   * @throws IOException if the rows cannot be read, or the handler fails
+   */
+  static void readRows(File rows, RowHandler handler) throws IOException {
+    InputStream in = new SequenceInputStream(Collections.enumeration(Arrays.asList(new ByteArrayInputStream(new byte[] {'['}),
+        new BufferedInputStream(new FileInputStream(rows)), new ByteArrayInputStream(new byte[] {']'}))));
+    try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+      if (parser.nextToken() != JsonToken.START_ARRAY) {
+        throw new IOException("Unexpected vulnerability rows, expected a JSON array");
+      }
+      while (parser.nextToken() == JsonToken.START_ARRAY) {
+        List<String> row = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          row.add(parser.getText());
+        }
+        handler.row(row);
+      }
+    }
+  }
+
+  /**
+   * Receives the rows read by {@link #readRows(File, RowHandler)}
+   */
+  interface RowHandler {
+
+    void row(List<String> cells) throws IOException;
+  }
+
+  /**
+   * Collects the scalar fields of the vulnerability record the parser is positioned at, nested structures are skipped
+   */
+  private static void readRecord(JsonParser parser, Map<String, String> record) throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken value = parser.nextToken();
+      if (value.isScalarValue()) {
+        record.put(field, parser.getText());
+      } else {
+        parser.skipChildren();
+      }
+    }
+  }
+}
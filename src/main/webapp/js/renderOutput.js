@@ -57,10 +57,106 @@ function severity(source, type, val) {
   return '<span class="label ' + classes + '">' + source + '</span>';
 }
 
-function buildPolicyEvalTable(tableId, outputFile) {
+const policyEvalHeaders = [
+  {
+    "title": "Image ID",
+    "sTitle": "Image ID"
+  },
+  {
+    "title": "Repo Tag",
+    "sTitle": "Repo Tag"
+  },
+  {
+    "title": "Trigger ID",
+    "sTitle": "Trigger ID"
+  },
+  {
+    "title": "Gate",
+    "sTitle": "Gate"
+  },
+  {
+    "title": "Trigger",
+    "sTitle": "Trigger"
+  },
+  {
+    "title": "Check Output",
+    "sTitle": "Check Output"
+  },
+  {
+    "title": "Gate Action",
+    "sTitle": "Gate Action"
+  },
+  {
+    "title": "Allowlisted",
+    "sTitle": "Allowlisted"
+  },
+  {
+    "title": "Inherited From Base",
+    "sTitle": "Inherited From Base"
+  },
+  {
+    "title": "Policy ID",
+    "sTitle": "Policy ID"
+  },
+  {
+    "title": "Recommendation",
+    "sTitle": "Recommendation"
+  },
+  {
+    "title": "Rule ID",
+    "sTitle": "Rule ID"
+  }
+];
+
+const policyEvalColumnDefs = [
+  {
+    targets: [0, 2],
+    render: function (source, type, val) {
+      return '<span style="word-break: break-all;">' + renderCell(source) + '</span>';
+    }
+  },
+  {
+    targets: 1,
+    render: function (source, type, val) {
+      return '<span style="word-break: break-all;">' + renderAnchoreLink(source) + '</span>';
+    }
+  },
+  {
+    targets: [3, 4, 5, 7, 8],
+    render: renderCell
+  },
+  {
+    targets: 6,
+    render: gateAction
+  }
+];
+
+function buildPolicyEvalTable(tableId, outputFile, tableUrl) {
   // This is the table that details all the specific vulnerabilities found
+  if (tableUrl) {
+    // Rows are paged, sorted and searched on the controller, only the visible rows are transferred
+    jQuery(document).ready(function () {
+      jQuery(tableId).DataTable({
+        retrieve: true,
+        serverSide: true,
+        processing: true,
+        searchDelay: 400,
+        ajax: tableUrl,
+        columns: policyEvalHeaders,
+        order: [[6, 'asc']],
+        columnDefs: policyEvalColumnDefs.concat([
+          {
+            // Columns without a precomputed order
+            targets: [2, 5, 7, 8, 9, 10, 11],
+            orderable: false
+          }
+        ])
+      });
+    });
+    return;
+  }
+
   jQuery.getJSON(outputFile, function (data) {
-    var headers = [];
     var rows = [];
 
     jQuery.each(data, function (imageId, imageIdObj) {
@@ -69,57 +165,6 @@ function buildPolicyEvalTable(tableId, outputFile) {
       var gate_results = imageIdObj.gate_results;
       var repo_tag =imageIdObj.repo_tag;
 
-      headers = [
-        {
-          "title": "Image ID",
-          "sTitle": "Image ID"
-        },
-        {
-          "title": "Repo Tag",
-          "sTitle": "Repo Tag"
-        },
-        {
-          "title": "Trigger ID",
-          "sTitle": "Trigger ID"
-        },
-        {
-          "title": "Gate",
-          "sTitle": "Gate"
-        },
-        {
-          "title": "Trigger",
-          "sTitle": "Trigger"
-        },
-        {
-          "title": "Check Output",
-          "sTitle": "Check Output"
-        },
-        {
-          "title": "Gate Action",
-          "sTitle": "Gate Action"
-        },
-        {
-          "title": "Allowlisted",
-          "sTitle": "Allowlisted"
-        },
-        {
-          "title": "Inherited From Base",
-          "sTitle": "Inherited From Base"
-        },
-        {
-          "title": "Policy ID",
-          "sTitle": "Policy ID"
-        },
-        {
-          "title": "Recommendation",
-          "sTitle": "Recommendation"
-        },
-        {
-          "title": "Rule ID",
-          "sTitle": "Rule ID"
-        }
-      ]
-
       gate_results.forEach((result) => {
         rows.push([
           image_digest.replace('sha256:', ''), 
@@ -145,30 +190,9 @@ function buildPolicyEvalTable(tableId, outputFile) {
       jQuery(tableId).DataTable({
         retrieve: true,
         data: rows,
-        columns: headers,
+        columns: policyEvalHeaders,
         order: [[6, 'asc']],
-        columnDefs: [
-          {
-            targets: [0, 2],
-            render: function (source, type, val) {
-              return '<span style="word-break: break-all;">' + renderCell(source) + '</span>';
-            }
-          },
-          {
-            targets: 1,
-            render: function (source, type, val) {
-              return '<span style="word-break: break-all;">' + renderAnchoreLink(source) + '</span>';
-            }
-          },
-          {
-            targets: [3, 4, 5, 7, 8],
-            render: renderCell
-          },
-          {
-            targets: 6,
-            render: gateAction
-          }
-        ]
+        columnDefs: policyEvalColumnDefs
       });
     });
   });
@@ -249,28 +273,127 @@ function buildPolicyEvalSummaryTable(tableId, tableObj) {
   });
 }
 
-function buildSecurityTable(tableId, outputFile) {
+const securityColumnDefs = [
+  {
+    targets: [0, 1, 3, 4],
+    render: renderCell
+  },
+  {
+    targets: 2,
+    render: severity
+  },
+  {
+    targets: 5,
+    render: renderLinkCell
+  }
+];
+
+const securityHeaders = ["Tag", "CVE ID", "Severity", "Vulnerability Package", "Fix Available", "Inherited From Base", "URL"];
+
+function buildSecurityTable(tableId, outputFile, tableUrl) {
+  if (tableUrl) {
+    buildPagedSecurityTable(tableId, tableUrl);
+    return;
+  }
+
   jQuery.getJSON(outputFile, function (tableObj) {
+    tableObj = decodeSecurityTable(tableObj);
     jQuery(document).ready(function () {
       jQuery(tableId).DataTable({
         retrieve: true,
         data: tableObj.data,
         columns: tableObj.columns,
         order: [[2, 'asc'], [0, 'asc']],
-        columnDefs: [
-          {
-            targets: [0, 1, 3, 4],
-            render: renderCell
-          },
-          {
-            targets: 2,
-            render: severity
-          },
-          {
-            targets: 5,
-            render: renderLinkCell
-          }
-        ]
+        columnDefs: securityColumnDefs
+      });
+    });
+  });
+}
+
+function decodeSecurityTable(tableObj) {
+  // Reports without a version are in the original format, with the values in the rows. From version 2 rows hold the positions of
+  // the values in per column dictionaries, columns without a dictionary hold the values
+  if (!tableObj.version) {
+    return tableObj;
+  }
+  if (tableObj.version !== 2) {
+    console.log('Unsupported vulnerability listing format version ' + tableObj.version);
+  }
+  var dictionaries = tableObj.dictionaries || [];
+  return {
+    columns: tableObj.columns,
+    data: tableObj.data.map(function (row) {
+      return row.map(function (code, column) {
+        return dictionaries[column] ? dictionaries[column][code] : code;
+      });
+    })
+  };
+}
+
+function buildPagedSecurityTable(tableId, tableUrl) {
+  // Rows are paged, sorted, searched and filtered on the controller, only the visible rows are transferred. The number of rows per
+  // severity, image and fix availability comes with every page and fills the filters once
+  jQuery(document).ready(function () {
+    var filters = jQuery('<div class="form-inline" style="margin-bottom: 10px;"></div>');
+    var facets = {
+      severity: jQuery('<select class="form-control input-sm" style="margin-right: 10px;"><option value="">All severities</option></select>'),
+      image: jQuery('<select class="form-control input-sm" style="margin-right: 10px;"><option value="">All images</option></select>'),
+      fix: jQuery('<select class="form-control input-sm"><option value="">Any fix availability</option></select>')
+    };
+    jQuery.each(facets, function (name, select) {
+      filters.append(select);
+    });
+    jQuery(tableId).before(filters);
+
+    var table = jQuery(tableId).on('xhr.dt', function (e, settings, json) {
+      if (!json || !json.facets || facets.severity.children().length > 1) {
+        return;
+      }
+      var severities = Object.keys(json.facets.severity || {}).sort(function (a, b) {
+        var rankA = severityLookup[a.toLowerCase()], rankB = severityLookup[b.toLowerCase()];
+        return (rankA === undefined ? 6 : rankA) - (rankB === undefined ? 6 : rankB);
+      });
+      severities.forEach(function (value) {
+        facets.severity.append(jQuery('<option></option>').val(value).text(value + ' (' + json.facets.severity[value] + ')'));
+      });
+      jQuery.each(json.facets.image || {}, function (value, count) {
+        facets.image.append(jQuery('<option></option>').val(value).text(value + ' (' + count + ')'));
+      });
+      jQuery.each({'true': 'Fix available', 'false': 'No fix available'}, function (value, label) {
+        if (json.facets.fix && json.facets.fix[value] !== undefined) {
+          facets.fix.append(jQuery('<option></option>').val(value).text(label + ' (' + json.facets.fix[value] + ')'));
+        }
+      });
+    }).DataTable({
+      retrieve: true,
+      serverSide: true,
+      processing: true,
+      searchDelay: 400,
+      ajax: {
+        url: tableUrl,
+        data: function (d) {
+          d.facet = {};
+          jQuery.each(facets, function (name, select) {
+            d.facet[name] = select.val();
+          });
+        }
+      },
+      columns: securityHeaders.map(function (header) {
+        return {"title": header};
+      }),
+      order: [[2, 'asc']],
+      columnDefs: securityColumnDefs.concat([
+        {
+          // Columns without a precomputed order
+          targets: [4, 5, 6],
+          orderable: false
+        }
+      ])
+    });
+
+    jQuery.each(facets, function (name, select) {
+      select.on('change', function () {
+        table.ajax.reload();
       });
     });
   });
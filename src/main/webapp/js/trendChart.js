@@ -0,0 +1,138 @@
+// Draws the Anchore trend of a job in the browser from the trendData endpoint of the project action, as a stacked area chart of a
+// series per build: policy actions, vulnerabilities by severity or by fix availability, or images by final action. The series, their
+// labels and colors come with the data, the same as the server side chart.
+function drawAnchoreTrend(canvas, dataUrl, buildUrlPrefix, select) {
+  fetch(dataUrl, {credentials: "same-origin"})
+    .then(function (response) {
+      if (!response.ok) {
+        throw new Error("Failed to load the Anchore trend: " + response.status);
+      }
+      return response.json();
+    })
+    .then(function (data) {
+      const draw = function () {
+        const name = select ? select.value : "actions";
+        const series = data.series.find(function (s) {
+          return s.name === name;
+        }) || data.series[0];
+        renderAnchoreTrend(canvas, series, data.builds, buildUrlPrefix);
+      };
+      if (select) {
+        data.series.forEach(function (s) {
+          const option = document.createElement("option");
+          option.value = s.name;
+          option.textContent = s.title;
+          select.appendChild(option);
+        });
+        select.onchange = draw;
+      }
+      draw();
+    })
+    .catch(function (error) {
+      console.log(error);
+    });
+}
+
+function renderAnchoreTrend(canvas, series, allBuilds, buildUrlPrefix) {
+  // Builds recorded before the counters of the series were kept have no values for it
+  const builds = allBuilds.filter(function (b) {
+    return Array.isArray(b[series.name]);
+  });
+  const ctx = canvas.getContext("2d");
+  const left = 40, right = 5, top = 5, bottom = 40;
+  const width = canvas.width - left - right;
+  const height = canvas.height - top - bottom;
+
+  ctx.clearRect(0, 0, canvas.width, canvas.height);
+  canvas.onmousemove = canvas.onclick = null;
+  canvas.title = "";
+  if (builds.length === 0) {
+    return;
+  }
+
+  let max = 1;
+  builds.forEach(function (b) {
+    max = Math.max(max, b[series.name].reduce(function (sum, value) {
+      return sum + value;
+    }, 0));
+  });
+  const step = builds.length > 1 ? width / (builds.length - 1) : 0;
+  const x = function (i) {
+    return left + i * step;
+  };
+  const y = function (value) {
+    return top + height - value * height / max;
+  };
+
+  // Stacked areas, each series drawn on top of the ones below it
+  const base = builds.map(function () {
+    return 0;
+  });
+  series.labels.forEach(function (label, k) {
+    const upper = builds.map(function (b, i) {
+      return base[i] + b[series.name][k];
+    });
+    ctx.beginPath();
+    upper.forEach(function (value, i) {
+      i === 0 ? ctx.moveTo(x(i), y(value)) : ctx.lineTo(x(i), y(value));
+    });
+    for (let i = builds.length - 1; i >= 0; i--) {
+      ctx.lineTo(x(i), y(base[i]));
+    }
+    ctx.closePath();
+    ctx.globalAlpha = 0.8;
+    ctx.fillStyle = series.colors[k];
+    ctx.fill();
+    ctx.globalAlpha = 1;
+    upper.forEach(function (value, i) {
+      base[i] = value;
+    });
+  });
+
+  // Axes, integer ticks on the count axis and build numbers on the build axis
+  ctx.strokeStyle = "#000";
+  ctx.fillStyle = "#000";
+  ctx.font = "10px sans-serif";
+  ctx.beginPath();
+  ctx.moveTo(left, top);
+  ctx.lineTo(left, top + height);
+  ctx.lineTo(left + width, top + height);
+  ctx.stroke();
+
+  const tick = Math.max(1, Math.ceil(max / 5));
+  ctx.textAlign = "right";
+  ctx.textBaseline = "middle";
+  for (let value = 0; value <= max; value += tick) {
+    ctx.fillText(String(value), left - 4, y(value));
+  }
+
+  const labelEvery = Math.max(1, Math.ceil(builds.length * 14 / Math.max(width, 1)));
+  ctx.textAlign = "right";
+  builds.forEach(function (b, i) {
+    if (i % labelEvery === 0 || i === builds.length - 1) {
+      ctx.save();
+      ctx.translate(x(i), top + height + 4);
+      ctx.rotate(-Math.PI / 2);
+      ctx.fillText("#" + b.number, 0, 0);
+      ctx.restore();
+    }
+  });
+
+  // Tooltip and link to the report of the build under the pointer
+  const buildAt = function (event) {
+    const rect = canvas.getBoundingClientRect();
+    const px = (event.clientX - rect.left) * canvas.width / rect.width;
+    const i = step > 0 ? Math.round((px - left) / step) : 0;
+    return builds[Math.max(0, Math.min(builds.length - 1, i))];
+  };
+  canvas.style.cursor = "pointer";
+  canvas.onmousemove = function (event) {
+    const b = buildAt(event);
+    canvas.title = series.labels.map(function (label, k) {
+      return "#" + b.number + ": " + b[series.name][k] + " " + label;
+    }).reverse().join("\n");
+  };
+  canvas.onclick = function (event) {
+    window.location.href = buildUrlPrefix + buildAt(event).number + "/anchore-results/";
+  };
+}